@@ -0,0 +1,31 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, always with the GC profiler so the allocation rate of each benchmark is reported alongside its
+ * time. Any of the usual JMH command-line options can be given, such as a pattern to only run some benchmarks.
+ */
+public class Benchmarks {
+    /**
+     * Runs the benchmarks.
+     * @param args  JMH command-line options, for example 'OrderBenchmark -p orderCount=1000' or '-rf json'.
+     */
+    public static void main(String[] args) {
+        try {
+            new Runner(new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        } catch (CommandLineOptionException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+        } catch (RunnerException e) {
+            System.err.println("Benchmarks failed: " + e.getMessage());
+        }
+    }
+}
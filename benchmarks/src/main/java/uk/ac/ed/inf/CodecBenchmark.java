@@ -0,0 +1,104 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the REST data of a first request, the restaurants, No-Fly zones, central area and a day of orders, with a
+ * new ObjectMapper against the hand-written codecs of JsonCodecs. The cold benchmarks time a single parse in a fresh
+ * JVM, so they include loading the classes and, for the ObjectMapper, introspecting the records; the setup only reads
+ * the bundled bytes so neither path has been touched before. The warm benchmarks time the same parse once the JIT has
+ * compiled it, with the ObjectMapper kept between parses as a long-running process would.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CodecBenchmark {
+    private byte[] restaurants;
+    private byte[] noFlyZones;
+    private byte[] centralArea;
+    private byte[] orders;
+    private ObjectMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        restaurants = read("restaurants.json");
+        noFlyZones = read("noFlyZones.json");
+        centralArea = read("centralArea.json");
+        orders = read("orders-" + Fixtures.DATE + ".json");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public void coldObjectMapper(Blackhole blackhole) throws IOException {
+        parseObjectMapper(new ObjectMapper(), blackhole);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public void coldCodecs(Blackhole blackhole) throws IOException {
+        parseCodecs(blackhole);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public void warmObjectMapper(Blackhole blackhole) throws IOException {
+        if (mapper == null){
+            mapper = new ObjectMapper();
+        }
+        parseObjectMapper(mapper, blackhole);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public void warmCodecs(Blackhole blackhole) throws IOException {
+        parseCodecs(blackhole);
+    }
+
+    private void parseObjectMapper(ObjectMapper mapper, Blackhole blackhole) throws IOException {
+        blackhole.consume(mapper.readValue(restaurants, Restaurant[].class));
+        blackhole.consume(mapper.readValue(noFlyZones, NoFlyZone[].class));
+        blackhole.consume(mapper.readValue(centralArea, LngLat[].class));
+        blackhole.consume(mapper.readValue(orders, Order[].class));
+    }
+
+    private void parseCodecs(Blackhole blackhole) throws IOException {
+        blackhole.consume(JsonCodecs.readArray(new ByteArrayInputStream(restaurants), Restaurant.class));
+        blackhole.consume(JsonCodecs.readArray(new ByteArrayInputStream(noFlyZones), NoFlyZone.class));
+        blackhole.consume(JsonCodecs.readArray(new ByteArrayInputStream(centralArea), LngLat.class));
+        blackhole.consume(JsonCodecs.readArray(new ByteArrayInputStream(orders), Order.class));
+    }
+
+    private static byte[] read(String name) throws IOException {
+        try (InputStream in = Fixtures.open(name)){
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole pipeline for the bundled day: reading the orders JSON, validating and planning them with a fresh A*
+ * planner, and writing the deliveries, flightpath and drone files to a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DayBenchmark {
+    private Fixtures fixtures;
+    private byte[] ordersJson;
+    private Path output;
+
+    @Setup
+    public void setup() throws IOException {
+        fixtures = Fixtures.load();
+        try (InputStream in = Fixtures.open("orders-" + Fixtures.DATE + ".json")){
+            ordersJson = in.readAllBytes();
+        }
+        output = Files.createTempDirectory("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(output)){
+            for (Path file : (Iterable<Path>) files::iterator){
+                Files.delete(file);
+            }
+        }
+        Files.delete(output);
+    }
+
+    @Benchmark
+    public App.DayPlan planDay() throws IOException {
+        List<Order> orders = new ArrayList<>();
+        OrderReader.read(new ByteArrayInputStream(ordersJson), orders::add);
+        App.DayPlan plan = App.planDay(orders.toArray(new Order[0]), fixtures.restaurants,
+                new AStarPathPlanner(fixtures.noFlyZones, fixtures.centralURL));
+        ResultWriter.writeDeliveries(output.resolve("deliveries.json"), plan.deliveries(), false);
+        ResultWriter.writeFlightpath(output.resolve("flightpath.json"), plan.flightpath(), false);
+        ResultWriter.writeDrone(output.resolve("drone.geojson"), plan.flightpath(), false);
+        return plan;
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+
+/**
+ * The REST data the benchmarks run against, read from the JSON files bundled in the benchmarks jar so every run uses
+ * exactly the same input without needing the REST server.
+ */
+public class Fixtures {
+    /** Date of the bundled orders. */
+    public static final String DATE = "2023-01-01";
+
+    /** The restaurants. */
+    public final Restaurant[] restaurants;
+    /** The No-Fly zones. */
+    public final MultiPolygon noFlyZones;
+    /** URL of the central area, which has already been loaded into the CentralArea singleton. */
+    public final URL centralURL;
+    /** The bundled orders of the day. */
+    public final Order[] orders;
+
+    private Fixtures() throws IOException {
+        restaurants = JsonCodecs.readArray(resource("restaurants.json"), Restaurant.class);
+        noFlyZones = NoFlyZone.toMultiPolygon(JsonCodecs.readArray(resource("noFlyZones.json"), NoFlyZone.class));
+        centralURL = resource("centralArea.json");
+        CentralArea.load(JsonCodecs.readArray(centralURL, LngLat.class));
+        orders = JsonCodecs.readArray(resource("orders-" + DATE + ".json"), Order.class);
+    }
+
+    /**
+     * Loads the bundled data.
+     * @return  The fixtures.
+     */
+    public static Fixtures load(){
+        try {
+            return new Fixtures();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the bundled fixtures", e);
+        }
+    }
+
+    /**
+     * Opens one of the bundled files.
+     * @param name  Name of the file, such as 'orders-2023-01-01.json'.
+     * @return  A stream of the file, which the caller must close.
+     */
+    public static InputStream open(String name){
+        return Fixtures.class.getResourceAsStream("/fixtures/" + name);
+    }
+
+    /**
+     * Makes a given number of orders by repeating the bundled ones with new order numbers. Each order gets its own
+     * array of pizzas, so no two orders are equal and the outcome remembered for one is never reused for another.
+     * @param count Number of orders to make.
+     * @return  The orders, in the same mix of valid and invalid as the bundled day.
+     */
+    public Order[] makeOrders(int count){
+        Order[] made = new Order[count];
+        for (int i = 0; i < count; i++){
+            Order order = orders[i % orders.length];
+            made[i] = new Order(String.format("%08X", i), order.orderDate(), order.customer(), order.creditCardNumber(),
+                    order.creditCardExpiry(), order.cvv(), order.priceTotalInPence(), order.orderItems().clone());
+        }
+        return made;
+    }
+
+    /**
+     * Returns the position of a restaurant.
+     * @param restaurant    Index of the restaurant.
+     * @return  Its position.
+     */
+    public LngLat restaurantPosition(int restaurant){
+        return new LngLat(restaurants[restaurant].longitude(), restaurants[restaurant].latitude());
+    }
+
+    private static URL resource(String name){
+        return Fixtures.class.getResource("/fixtures/" + name);
+    }
+}
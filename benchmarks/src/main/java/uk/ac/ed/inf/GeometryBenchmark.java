@@ -0,0 +1,83 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The geometry every planned move goes through: stepping the drone, measuring distances and checking moves against
+ * the No-Fly zones. The positions checked are those along a real path to a restaurant, so some moves are near zones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+    private Fixtures fixtures;
+    private LngLat[] positions;
+    private LngLat goal;
+    private int next = 0;
+    // two segments that cross and one that misses them, kept in fields so they are not folded into constants
+    private double[] crossing = {-3.1900, 55.9440, -3.1880, 55.9450, -3.1900, 55.9450, -3.1880, 55.9440};
+    private double[] missing = {-3.1900, 55.9440, -3.1880, 55.9450, -3.1870, 55.9440, -3.1860, 55.9430};
+
+    @Setup
+    public void setup(){
+        fixtures = Fixtures.load();
+        goal = fixtures.restaurantPosition(0);
+        float[] moves = new AStarPathPlanner(fixtures.noFlyZones, fixtures.centralURL).planMoves(App.DRONE_START, goal);
+        positions = new LngLat[moves.length + 1];
+        positions[0] = App.DRONE_START;
+        for (int i = 0; i < moves.length; i++){
+            positions[i + 1] = positions[i].nextPosition(CompassDirection.fromAngle(moves[i]));
+        }
+    }
+
+    private LngLat nextPosition(){
+        next = next + 1 < positions.length ? next + 1 : 0;
+        return positions[next];
+    }
+
+    @Benchmark
+    public LngLat nextPositionByDirection(){
+        return nextPosition().nextPosition(CompassDirection.get(next % CompassDirection.COUNT));
+    }
+
+    @Benchmark
+    public LngLat nextPositionByAngle(){
+        return nextPosition().nextPosition(CompassDirection.get(next % CompassDirection.COUNT).getAngle());
+    }
+
+    @Benchmark
+    public double distanceTo(){
+        return nextPosition().distanceTo(goal);
+    }
+
+    @Benchmark
+    public boolean intersectsNoFlyZones(){
+        return NoFlyZone.intersectsNoFlyZones(fixtures.noFlyZones, nextPosition(), CompassDirection.get(next % CompassDirection.COUNT).getAngle());
+    }
+
+    @Benchmark
+    public boolean linesIntersectCrossing(){
+        double[] l = crossing;
+        return NoFlyZone.linesIntersect(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7]);
+    }
+
+    @Benchmark
+    public boolean linesIntersectMissing(){
+        double[] l = missing;
+        return NoFlyZone.linesIntersect(l[0], l[1], l[2], l[3], l[4], l[5], l[6], l[7]);
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating and sorting a day of orders at different sizes, made by repeating the bundled orders. Nothing is
+ * remembered between validations, so the same orders are validated in every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int orderCount;
+
+    private Fixtures fixtures;
+    private Order[] orders;
+
+    @Setup
+    public void setup(){
+        fixtures = Fixtures.load();
+        orders = fixtures.makeOrders(orderCount);
+    }
+
+    @Benchmark
+    public void getValidity(Blackhole blackhole){
+        for (Order order : orders){
+            blackhole.consume(order.getValidity(fixtures.restaurants));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Order> sortOrders(){
+        return Order.sortOrders(orders, fixtures.restaurants, App.DRONE_START);
+    }
+}
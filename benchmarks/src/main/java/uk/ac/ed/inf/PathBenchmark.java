@@ -0,0 +1,57 @@
+package uk.ac.ed.inf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning the path to each bundled restaurant: one greedy move choice from Appleton Tower, and the whole trip there
+ * and back with a fresh A* planner, so no route is reused between invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+    @Param({"0", "1", "2", "3"})
+    public int restaurant;
+
+    private Fixtures fixtures;
+    private LngLat goal;
+    private Order order;
+    private PositionIndex explored;
+
+    @Setup
+    public void setup(){
+        fixtures = Fixtures.load();
+        goal = fixtures.restaurantPosition(restaurant);
+        explored = new PositionIndex();
+        explored.add(App.DRONE_START);
+        // any order will do, only its number is written into the moves
+        order = fixtures.orders[0];
+    }
+
+    @Benchmark
+    public float findBestMove(){
+        return App.findBestMove(App.DRONE_START, goal, fixtures.noFlyZones, explored, fixtures.centralURL);
+    }
+
+    @Benchmark
+    public List<DroneMove> makeFullOrderPath(){
+        return App.makeFullOrderPath(App.DRONE_START, order, fixtures.restaurants[restaurant],
+                new AStarPathPlanner(fixtures.noFlyZones, fixtures.centralURL), 0);
+    }
+}
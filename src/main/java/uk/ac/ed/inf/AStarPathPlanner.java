@@ -0,0 +1,158 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Path planner which runs an A* search over the positions reachable using moves in the 16 compass directions.
+ * Positions are grouped into the square cells of a PositionIndex, and each cell is only expanded once.
+ */
+public class AStarPathPlanner implements PathPlanner {
+    private static final double MOVE_LENGTH = CompassDirection.MOVE_LENGTH;
+    /** Maximum number of moves the drone can make in a day, longer paths are never searched. */
+    public static final int MAX_MOVES = 2000;
+    /** Maximum number of positions expanded before the search gives up. */
+    public static final int MAX_EXPANSIONS = 500000;
+
+    private final NoFlyZoneSet noFlyZones;
+    private final CentralArea centralArea;
+
+    /**
+     * Default constructor for the A* planner.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     */
+    public AStarPathPlanner(MultiPolygon noFlyZone, URL centralURL){
+        this(NoFlyZoneSet.of(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates an A* planner from No-Fly zones which have already been compiled.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     */
+    public AStarPathPlanner(NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        this.noFlyZones = noFlyZones;
+        this.centralArea = centralArea;
+    }
+
+    /**
+     * Finds the shortest sequence of legal moves from the start until the drone is close to the goal.
+     * Moves are legal if they do not cross a No-Fly zone and do not re-enter the central area after leaving it.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        SearchTree tree = new SearchTree();
+        NodeQueue open = new NodeQueue();
+        PositionIndex closed = new PositionIndex();
+        double startH = heuristic(goal, start.longitude(), start.latitude());
+        open.push(tree.add(start.longitude(), start.latitude(), -1, 0, -1), startH, startH);
+        int expansions = 0;
+        // rejected candidates are counted locally and only added to the metrics once
+        int rejectedExplored = 0;
+        int rejectedNoFly = 0;
+        int rejectedCentral = 0;
+        float[] moves = null;
+        while (!open.isEmpty() && expansions < MAX_EXPANSIONS){
+            int node = open.pop();
+            double longitude = tree.longitudes[node];
+            double latitude = tree.latitudes[node];
+            if (goal.closeTo(longitude, latitude)){
+                moves = tree.anglesTo(node);
+                break;
+            }
+            // each cell is only expanded from the first (cheapest) position popped in it
+            if (!closed.addToEmptyCell(longitude, latitude)){
+                continue;
+            }
+            expansions++;
+            boolean inCentral = centralArea.contains(longitude, latitude);
+            int moveCount = tree.moves[node] + 1;
+            for (int d = 0; d < CompassDirection.COUNT; d++){
+                CompassDirection direction = CompassDirection.get(d);
+                double nextLongitude = direction.nextLongitude(longitude);
+                double nextLatitude = direction.nextLatitude(latitude);
+                if (closed.containsCell(nextLongitude, nextLatitude)){
+                    rejectedExplored++;
+                    continue;
+                }
+                // if the drone has left the central area it cannot return
+                if (!inCentral && centralArea.contains(nextLongitude, nextLatitude)){
+                    rejectedCentral++;
+                    continue;
+                }
+                if (noFlyZones.intersects(longitude, latitude, nextLongitude, nextLatitude)){
+                    rejectedNoFly++;
+                    continue;
+                }
+                double h = heuristic(goal, nextLongitude, nextLatitude);
+                // paths that cannot fit in a day's moves are not worth searching
+                if (moveCount + h > MAX_MOVES){
+                    continue;
+                }
+                open.push(tree.add(nextLongitude, nextLatitude, node, moveCount, d), moveCount + h, h);
+            }
+        }
+        if (Metrics.isEnabled()){
+            Metrics.REJECTED_EXPLORED.add(rejectedExplored);
+            Metrics.REJECTED_NO_FLY.add(rejectedNoFly);
+            Metrics.REJECTED_CENTRAL.add(rejectedCentral);
+        }
+        return moves;
+    }
+
+    /**
+     * Lower bound on the number of moves needed to get close to the goal, each move covers exactly one move length
+     * and the drone only needs to get within one move length of the goal.
+     * @param goal      Goal the drone is trying to get close to.
+     * @param longitude Longitude of the position the estimate is made from.
+     * @param latitude  Latitude of the position the estimate is made from.
+     * @return  Admissible estimate of the number of moves remaining.
+     */
+    private static double heuristic(LngLat goal, double longitude, double latitude){
+        return Math.max(0, (goal.distanceTo(longitude, latitude) - MOVE_LENGTH) / MOVE_LENGTH);
+    }
+
+    /**
+     * Every position generated by the search, stored as parallel arrays indexed by node number.
+     */
+    private static class SearchTree {
+        private double[] longitudes = new double[256];
+        private double[] latitudes = new double[256];
+        private int[] parents = new int[256];
+        private int[] moves = new int[256];
+        private byte[] directions = new byte[256];
+        private int size = 0;
+
+        private int add(double longitude, double latitude, int parent, int moveCount, int direction){
+            if (size == longitudes.length){
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+                moves = Arrays.copyOf(moves, size * 2);
+                directions = Arrays.copyOf(directions, size * 2);
+            }
+            longitudes[size] = longitude;
+            latitudes[size] = latitude;
+            parents[size] = parent;
+            moves[size] = moveCount;
+            directions[size] = (byte) direction;
+            return size++;
+        }
+
+        private float[] anglesTo(int node){
+            float[] path = new float[moves[node]];
+            // walk back up the tree, filling the path from the end
+            for (int i = path.length - 1; i >= 0; i--){
+                path[i] = CompassDirection.get(directions[node]).getAngle();
+                node = parents[node];
+            }
+            return path;
+        }
+    }
+}
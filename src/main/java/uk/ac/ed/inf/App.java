@@ -1,22 +1,35 @@
 package uk.ac.ed.inf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Paths;
 import com.mapbox.geojson.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Main class for the whole program, this is the entry point of the whole application.
  */
 public class App {
+    /** Position every trip of the drone starts and finishes at, Appleton Tower. */
+    public static final LngLat DRONE_START = new LngLat(-3.186874, 55.944494);
+
     /**
      * Invokes the program.
-     * @param args date (the date for which the orders are processed) baseUrlString (the URL base to which REST-requests are made).
+     * @param args date (the date for which the orders are processed) baseUrlString (the URL base to which REST-requests are made),
+     *             optionally followed by --planner=astar|greedy|visibility|flowfield to choose how paths are planned,
+     *             --parallel to plan the paths of the day concurrently and --objective=count|revenue to choose the
+     *             orders delivered to maximise the number delivered or the revenue, instead of nearest first, and
+     *             --drones=n to share the orders between a fleet of drones, and --streaming to read the orders one at
+     *             a time and write invalid orders straight to the deliveries file. --snapshot-dir=dir sets the
+     *             directory the REST responses are kept in and revalidated from (snapshots by default), each base URL
+     *             in its own subdirectory, and --offline reads everything from there without contacting the REST server. --gzip compresses the
+     *             files written, adding .gz to their names, and --binary also writes the flightpath in the binary
+     *             form of BinaryFlightpath.
      */
     public static void main(String[] args) {
         // check if enough command-line arguments have been entered
@@ -26,53 +39,364 @@ public class App {
             // parse command-line arguments
             String date = args[0];
             String baseUrlStr = args[1];
+            RunOptions options = new RunOptions(args, 2);
+            Metrics.setEnabled(options.has("metrics"));
             // ensure correct url format
             if (!baseUrlStr.endsWith("/")) {
                 baseUrlStr += "/";
             }
-            // check if all urls needed exist and are correct
-            if (checkURLS(baseUrlStr, date)) {
-                try {
-                    URL centralURL = new URL(baseUrlStr + "centralArea/");
-                    // get all the restaurants and orders from REST server
-                    Restaurant[] restaurants = Restaurant.getRestaurantsFromRestServer(new URL(baseUrlStr));
-                    Order[] orders = Order.getOrders(baseUrlStr, date);
-                    MultiPolygon noFlyZone = NoFlyZone.getNoFlyZones(baseUrlStr);
-                    // only make flightpath if there are orders, this prevents errors
-                    if (orders.length > 0) {
-                        Delivery[] deliveries = Delivery.getDeliveries(orders, restaurants);
-                        List<DroneMove> flightpath = new ArrayList<>();
-                        // drone starts at Appleton Tower
-                        LngLat position = new LngLat(-3.186874, 55.944494);
-                        // sort order numbers based off proximity to the restaurant
-                        ArrayList<Order> sortedOrders = Order.sortOrders(orders, restaurants, position);
-                        // time the start of move calculation
-                        long startTicks = System.currentTimeMillis();
-                        // for all orders on the day
-                        for (Order order : sortedOrders) {
-                            // if order is valid
-                            if (order.getValidity(restaurants).equals("Valid")) {
-                                Restaurant restaurant = order.getRestaurant(restaurants); // restaurants won't be null as it would have caused a jackson exception
-                                // construct the path to and from the restaurant
-                                List<DroneMove> orderPath = makeFullOrderPath(position, order, restaurant, noFlyZone, startTicks, centralURL);
-                                // if the flightpath would exceed 2000 moves, add the constructed path to the total flightpath and set the order to delivered
-                                if (orderPath.size() + flightpath.size() <= 2000) {
-                                    flightpath.addAll(orderPath);
-                                    Delivery.setDelivered(deliveries, order);
-                                    // next drone move starts from end point of the previous flightpath
-                                    position = new LngLat(orderPath.get(orderPath.size()-1).getToLongitude(), orderPath.get(orderPath.size()-1).getToLatitude());
-                                // otherwise set status to ValidButNotDelivered
-                                } else {
-                                    Delivery.setValidNotDelivered(deliveries, order);
-                                }
-                            }
-                        }
-                        writeFiles(date, deliveries, flightpath);
-                    }
-                } catch (IOException e) {
-                    System.err.println("I/O Exception, please check connection and input data");
+            try {
+                // every resource is fetched once, or revalidated against its snapshot, and a failure is reported here
+                RestDataSource source = dataSource(baseUrlStr, options);
+                Restaurant[] restaurants = source.getRestaurants();
+                MultiPolygon noFlyZone = source.getNoFlyZones();
+                PathPlanner planner = makeCachedPlanner(options, restaurants, new NoFlyZoneSet(noFlyZone), source.getCentralArea());
+                runDay(date, source, restaurants, planner, options);
+                Metrics.writeSummary(options);
+            } catch (MalformedURLException e) {
+                System.err.println("Malformed URL, please check URL protocol");
+            } catch (IOException e) {
+                System.err.println("I/O Exception, please check connection and input data");
+            }
+        }
+    }
+
+    /**
+     * Outcome of planning one day of orders: the delivery status of each order and the flightpath of the drone.
+     * @param deliveries    The delivery information for each of the orders.
+     * @param flightpath    The flightpath the drone took.
+     */
+    public record DayPlan(Delivery[] deliveries, List<DroneMove> flightpath) {}
+
+    /**
+     * Plans the flightpath of the drone for one day of orders, delivering the orders closest to their restaurant first
+     * until the drone runs out of moves. This only reads the restaurants and the planner, so days can be planned in parallel.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @return  The deliveries and flightpath of the day.
+     */
+    public static DayPlan planDay(Order[] orders, Restaurant[] restaurants, PathPlanner planner){
+        return planDay(orders, restaurants, planner, false);
+    }
+
+    /**
+     * Plans the flightpath of the drone for one day of orders, optionally planning the paths of all the valid orders
+     * concurrently first. As each trip finishes exactly where it started, the paths don't depend on which orders were
+     * delivered before, so the moves are then assembled and checked against the move limit one order at a time, giving
+     * the same deliveries and flightpath as planning sequentially.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param parallel  Whether to plan the paths concurrently before assembling the flightpath.
+     * @return  The deliveries and flightpath of the day.
+     */
+    public static DayPlan planDay(Order[] orders, Restaurant[] restaurants, PathPlanner planner, boolean parallel){
+        return planDay(orders, restaurants, planner, parallel, null);
+    }
+
+    /**
+     * Plans the flightpath of the drone for one day of orders, optionally choosing the orders to deliver with an
+     * OrderScheduler. The path to each restaurant is then planned once up front, its round trip cost is used to choose
+     * the orders that maximise the objective within the move limit, and only the chosen orders are delivered.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param parallel  Whether to plan the paths concurrently before assembling the flightpath.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and flightpath of the day.
+     */
+    public static DayPlan planDay(Order[] orders, Restaurant[] restaurants, PathPlanner planner, boolean parallel, OrderScheduler.Objective objective){
+        return planDay(orders, MenuIndex.of(restaurants), planner, parallel, objective);
+    }
+
+    /**
+     * Plans the flightpath of the drone for one day of orders, validating them with a menu index which has already been
+     * built, such as the one a long-running planner keeps for its restaurants.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param parallel  Whether to plan the paths concurrently before assembling the flightpath.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and flightpath of the day.
+     */
+    public static DayPlan planDay(Order[] orders, MenuIndex index, PathPlanner planner, boolean parallel, OrderScheduler.Objective objective){
+        Metrics.ValidationEvent validation = new Metrics.ValidationEvent(orders.length);
+        MenuIndex.Validation[] validations = index.checkAll(orders);
+        validation.finish();
+        return planDay(orders, validations, planner, parallel, objective);
+    }
+
+    /**
+     * Plans the flightpath of the drone for one day of orders which have already been validated, so each order's
+     * outcome and restaurant are worked out once and only looked up here.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param validations   The outcome of validating each order, see MenuIndex.checkAll.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param parallel  Whether to plan the paths concurrently before assembling the flightpath.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and flightpath of the day.
+     */
+    public static DayPlan planDay(Order[] orders, MenuIndex.Validation[] validations, PathPlanner planner, boolean parallel, OrderScheduler.Objective objective){
+        Delivery[] deliveries = Delivery.getDeliveries(orders, validations);
+        DeliveryBook book = new DeliveryBook(deliveries);
+        FlightPathBuffer flightpath = new FlightPathBuffer(2000);
+        // drone starts at Appleton Tower
+        LngLat position = DRONE_START;
+        // sort order numbers based off proximity to the restaurant
+        int[] sorted = Order.sortedIndices(validations, position);
+        ArrayList<Order> sortedOrders = new ArrayList<>(sorted.length);
+        // time the start of move calculation
+        long startTicks = System.currentTimeMillis();
+        // the restaurant and goal of each valid order, null for invalid orders
+        Restaurant[] restaurants = new Restaurant[sorted.length];
+        LngLat[] goals = new LngLat[sorted.length];
+        for (int i = 0; i < goals.length; i++) {
+            sortedOrders.add(orders[sorted[i]]);
+            MenuIndex.Validation checked = validations[sorted[i]];
+            if (checked.outcome().equals("Valid")) {
+                restaurants[i] = checked.restaurant();
+                goals[i] = new LngLat(restaurants[i].longitude(), restaurants[i].latitude());
+            }
+        }
+        if (parallel || objective != null) {
+            List<LngLat> validGoals = new ArrayList<>();
+            for (LngLat goal : goals) {
+                if (goal != null) {
+                    validGoals.add(goal);
+                }
+            }
+            planner = parallel ? new PrecomputedPathPlanner(planner, position, validGoals, ForkJoinPool.commonPool())
+                    : new PrecomputedPathPlanner(planner, position, validGoals);
+        }
+        // without an objective every order is attempted, in order, until the moves run out
+        boolean[] selected = null;
+        if (objective != null) {
+            int[] costs = new int[goals.length];
+            for (int i = 0; i < goals.length; i++) {
+                float[] moves = goals[i] == null ? null : planner.planMoves(position, goals[i]);
+                // there and back, hovering at each end
+                costs[i] = moves == null ? -1 : 2 * moves.length + 2;
+            }
+            selected = new OrderScheduler(objective, 2000).select(sortedOrders, costs);
+        }
+        // for all orders on the day
+        for (int i = 0; i < sortedOrders.size(); i++) {
+            Order order = sortedOrders.get(i);
+            // if order is valid
+            if (goals[i] != null) {
+                Restaurant restaurant = restaurants[i]; // restaurants won't be null as it would have caused a jackson exception
+                // construct the path to and from the restaurant on the end of the flightpath, unless the scheduler left the order out
+                int orderStart = flightpath.size();
+                Metrics.OrderPlanEvent event = new Metrics.OrderPlanEvent(order.orderNo());
+                boolean found = (selected == null || selected[i]) && appendFullOrderPath(flightpath, position, order, restaurant, planner, startTicks);
+                event.finish(found, flightpath.size() - orderStart);
+                // if a path was found and the flightpath does not exceed 2000 moves, set the order to delivered
+                if (found && flightpath.size() <= 2000) {
+                    book.setDelivered(order);
+                    // next drone move starts from end point of the previous flightpath
+                    position = new LngLat(flightpath.getToLongitude(flightpath.size() - 1), flightpath.getToLatitude(flightpath.size() - 1));
+                // otherwise take the order's moves back off and set status to ValidButNotDelivered
+                } else {
+                    flightpath.truncate(orderStart);
+                    book.setValidNotDelivered(order);
+                }
+            }
+        }
+        return new DayPlan(deliveries, flightpath.asList());
+    }
+
+    /**
+     * Creates the planner selected by the command-line flags, wrapped so routes are cached between runs and only planned
+     * again when the map changes.
+     * @param options   The command-line flags.
+     * @param restaurants   The restaurants paths are planned to.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     * @return  The planner.
+     */
+    public static PathPlanner makeCachedPlanner(RunOptions options, Restaurant[] restaurants, MultiPolygon noFlyZone, URL centralURL){
+        return makeCachedPlanner(options, restaurants, new NoFlyZoneSet(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates the planner selected by the --planner flag, wrapped so its routes are cached in the routecache folder.
+     * @param options   The command-line flags.
+     * @param restaurants   The restaurants paths are planned to.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids, shared by the planner and the cache.
+     * @param centralArea   The central area.
+     * @return  The planner.
+     */
+    public static PathPlanner makeCachedPlanner(RunOptions options, Restaurant[] restaurants, NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        return new CachingPathPlanner(makePlanner(options.get("planner", "astar"), restaurants, noFlyZones, centralArea),
+                new RouteCache(256, Paths.get("routecache")), noFlyZones, centralArea);
+    }
+
+    /**
+     * Creates the source of the REST data selected by the --snapshot-dir and --offline flags.
+     * @param baseUrlStr    The base of the URL through which the REST server is accessed.
+     * @param options   The command-line flags.
+     * @return  The data source.
+     */
+    public static RestDataSource dataSource(String baseUrlStr, RunOptions options){
+        return new RestDataSource(baseUrlStr, Paths.get(options.get("snapshot-dir", "snapshots")), options.has("offline"));
+    }
+
+    /**
+     * Fetches the orders of a day, plans them with the command-line flags and writes the day's files.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param source    The source the orders are fetched from.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param options   The command-line flags.
+     * @return  Boolean for whether the day had any orders.
+     * @throws IOException  If the orders can't be read or the files can't be written when streaming.
+     */
+    public static boolean runDay(String date, RestDataSource source, Restaurant[] restaurants, PathPlanner planner, RunOptions options) throws IOException {
+        return runDay(date, source, MenuIndex.of(restaurants), planner, options);
+    }
+
+    /**
+     * Plans one day of orders with the command-line flags and writes its files, validating the orders with a menu index
+     * which has already been built.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param source    The source the orders are fetched from.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param options   The command-line flags.
+     * @return  Boolean for whether the day had any orders.
+     * @throws IOException  If the orders can't be read or the files can't be written when streaming.
+     */
+    public static boolean runDay(String date, RestDataSource source, MenuIndex index, PathPlanner planner, RunOptions options) throws IOException {
+        if (options.has("streaming")) {
+            return planStreamingDay(date, source.openOrders(date), index, planner, options) > 0;
+        }
+        Order[] orders = source.getOrders(date);
+        // only make flightpath if there are orders, this prevents errors
+        if (orders.length == 0) {
+            return false;
+        }
+        planAndWriteDay(date, orders, index, planner, options);
+        return true;
+    }
+
+    /**
+     * Plans one day of orders read one at a time from a stream. Each order is validated as it arrives, invalid
+     * orders are written straight to the deliveries file and only the valid ones are kept to be planned, so the invalid
+     * orders are never all held in memory. The deliveries file lists the invalid orders as they arrived followed by the
+     * valid ones once they are planned.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param orders  Stream of the JSON array of the day's orders, which is closed once read.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param options   The command-line flags.
+     * @return  The number of orders read.
+     * @throws IOException  If the orders can't be read or the deliveries file can't be written.
+     */
+    public static int planStreamingDay(String date, InputStream orders, MenuIndex index, PathPlanner planner, RunOptions options) throws IOException {
+        List<Order> valid = new ArrayList<>();
+        List<MenuIndex.Validation> validChecks = new ArrayList<>();
+        boolean gzip = options.has("gzip");
+        boolean binary = options.has("binary");
+        try (DeliveriesWriter deliveries = new DeliveriesWriter(ResultWriter.resultFile("deliveries-" + date + ".json", gzip), gzip)) {
+            // the orders are validated as they are read, so this also covers reading them
+            Metrics.ValidationEvent validation = new Metrics.ValidationEvent(0);
+            int count = OrderReader.read(orders, order -> {
+                // only the outcomes of valid orders are kept, so invalid orders can be freed once written
+                MenuIndex.Validation checked = index.check(order);
+                if (checked.outcome().equals("Valid")) {
+                    valid.add(order);
+                    validChecks.add(checked);
+                } else {
+                    deliveries.write(new Delivery(order.orderNo(), checked.outcome(), order.priceTotalInPence()));
                 }
+            });
+            validation.finish(count);
+            int drones = options.getInt("drones", 1);
+            if (valid.isEmpty()) {
+                // nothing to fly, but the same files are written as when the day is planned all at once
+                ResultWriter.writeDay(date, null, Collections.nCopies(drones, List.<DroneMove>of()), gzip, binary);
+                return count;
+            }
+            Order[] validOrders = valid.toArray(new Order[0]);
+            MenuIndex.Validation[] validations = validChecks.toArray(new MenuIndex.Validation[0]);
+            Delivery[] planned;
+            if (drones > 1) {
+                FleetPlanner.FleetPlan plan = FleetPlanner.planDay(validOrders, validations, planner, drones, objective(options));
+                ResultWriter.writeDay(date, null, plan.flightpaths(), gzip, binary);
+                planned = plan.deliveries();
+            } else {
+                DayPlan plan = planDay(validOrders, validations, planner, options.has("parallel"), objective(options));
+                ResultWriter.writeDay(date, null, List.of(plan.flightpath()), gzip, binary);
+                planned = plan.deliveries();
+            }
+            for (Delivery delivery : planned) {
+                deliveries.write(delivery);
             }
+            return count;
+        }
+    }
+
+    /**
+     * Plans one day of orders with the command-line flags and writes its files, for a single drone or a fleet.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param options   The command-line flags.
+     */
+    public static void planAndWriteDay(String date, Order[] orders, MenuIndex index, PathPlanner planner, RunOptions options){
+        int drones = options.getInt("drones", 1);
+        if (drones > 1) {
+            FleetPlanner.writeFiles(date, FleetPlanner.planDay(orders, index, planner, drones, objective(options)), options);
+        } else {
+            DayPlan plan = planDay(orders, index, planner, options.has("parallel"), objective(options));
+            writeFiles(date, plan.deliveries(), plan.flightpath(), options);
+        }
+    }
+
+    /**
+     * Returns the objective selected by the --objective flag.
+     * @param options   The command-line flags.
+     * @return  The objective, or null if orders are delivered nearest first.
+     */
+    public static OrderScheduler.Objective objective(RunOptions options){
+        return options.has("objective") ? OrderScheduler.Objective.named(options.get("objective", "count")) : null;
+    }
+
+    /**
+     * Creates the path planner with a given name.
+     * @param name  Name of the planner, one of astar, greedy, visibility or flowfield.
+     * @param restaurants   The restaurants paths are planned to.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     * @return  The planner, the A* planner if the name is not recognised.
+     */
+    public static PathPlanner makePlanner(String name, Restaurant[] restaurants, MultiPolygon noFlyZone, URL centralURL){
+        return makePlanner(name, restaurants, new NoFlyZoneSet(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates the path planner with a given name, from No-Fly zones which have already been compiled.
+     * @param name  Name of the planner, one of astar, greedy, visibility or flowfield.
+     * @param restaurants   The restaurants paths are planned to.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     * @return  The planner, the A* planner if the name is not recognised.
+     */
+    public static PathPlanner makePlanner(String name, Restaurant[] restaurants, NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        switch (name) {
+            case "greedy":
+                return new GreedyPathPlanner(noFlyZones, centralArea);
+            case "visibility":
+                return new VisibilityGraphPlanner(noFlyZones, centralArea);
+            case "flowfield":
+                return new FlowFieldPlanner(restaurants, noFlyZones, centralArea);
+            case "astar":
+                return new AStarPathPlanner(noFlyZones, centralArea);
+            default:
+                System.err.println("Unknown planner " + name + ", using astar");
+                return new AStarPathPlanner(noFlyZones, centralArea);
         }
     }
 
@@ -83,10 +407,22 @@ public class App {
      * @param flightpath    The flightpath the drone took.
      */
     public static void writeFiles(String date, Delivery[] deliveries, List<DroneMove> flightpath){
-        List<Point> coordinates = DroneMove.makePathCoordinates(flightpath);
-        writeGeojson(FeatureCollection.fromFeature(Feature.fromGeometry(LineString.fromLngLats(coordinates))).toJson(), date);
-        writeDeliveries(date, deliveries);
-        writeFlightPath(flightpath, date);
+        writeFiles(date, deliveries, flightpath, new RunOptions(new String[0], 0));
+    }
+
+    /**
+     * Writes the deliveries, flightpath and drone files of a day at the same time, streaming each straight from the plan.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param deliveries    The delivery information for each of the orders.
+     * @param flightpath    The flightpath the drone took.
+     * @param options   The command-line flags, --gzip to compress the files and --binary to also write the binary flightpath.
+     */
+    public static void writeFiles(String date, Delivery[] deliveries, List<DroneMove> flightpath, RunOptions options){
+        try{
+            ResultWriter.writeDay(date, deliveries, List.of(flightpath), options.has("gzip"), options.has("binary"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -104,11 +440,11 @@ public class App {
             URL centralAreaURL = new URL(baseUrl + "centralArea/");
             URL noFlyUrl = new URL(baseUrl + "noFlyZones/");
             URL restaurantsUrl = new URL(baseUrl + "restaurants/");
-            // check retrieving and parsing the data does not give an error
-            new ObjectMapper().readValue(orderUrl, Order[].class);
-            new ObjectMapper().readValue(centralAreaURL, LngLat[].class);
-            new ObjectMapper().readValue(noFlyUrl, NoFlyZone[].class);
-            new ObjectMapper().readValue(restaurantsUrl, Restaurant[].class);
+            // check retrieving and parsing the data does not give an error, reading the orders one at a time
+            OrderReader.read(orderUrl, order -> {});
+            JsonCodecs.readArray(centralAreaURL, LngLat.class);
+            JsonCodecs.readArray(noFlyUrl, NoFlyZone.class);
+            JsonCodecs.readArray(restaurantsUrl, Restaurant.class);
             // if no error, the URLs are fine
             ok = true;
         }
@@ -122,30 +458,63 @@ public class App {
     }
 
     /**
-     * Generates the list of drone moves for part of the drone's flightpath from the starting position to the goal.
+     * Generates the list of drone moves for part of the drone's flightpath from the starting position to the goal,
+     * using the greedy planner which takes the best move at each step.
      * @param position  Starting point of the drone.
      * @param goal      Finishing point of the drone's flightpath.
      * @param noFlyZone The No-Fly zones of the central area, which the drone should avoid flying through.
      * @param order     The order which the drone is attempting to deliver.
      * @param startTicks         The initial number of ticks of the first calculation.
      * @param centralURL    URL of the Central Area.
-     * @return          A list of drone moves generated for this part of the flightpath.
+     * @return          A list of drone moves generated for this part of the flightpath, or null if the drone gets stuck.
      */
     public static List<DroneMove> makeOrderPathToGoal(LngLat position, LngLat goal, MultiPolygon noFlyZone, Order order, long startTicks, URL centralURL){
-        List<DroneMove> orderPath = new ArrayList<>();
-        List<LngLat> explored = new ArrayList<>();
-        // find moves until goal is reached
-        while (!position.closeTo(goal)) {
-            float bestMove = findBestMove(position, goal, noFlyZone, explored, centralURL);
-            LngLat newPosition = position.nextPosition(bestMove);
+        return makeOrderPathToGoal(position, goal, new GreedyPathPlanner(noFlyZone, centralURL), order, startTicks);
+    }
+
+    /**
+     * Generates the list of drone moves for part of the drone's flightpath from the starting position to the goal.
+     * @param position  Starting point of the drone.
+     * @param goal      Finishing point of the drone's flightpath.
+     * @param planner   The planner used to find the moves to the goal.
+     * @param order     The order which the drone is attempting to deliver.
+     * @param startTicks         The initial number of ticks of the first calculation.
+     * @return          A list of drone moves generated for this part of the flightpath, or null if no path to the goal was found.
+     */
+    public static List<DroneMove> makeOrderPathToGoal(LngLat position, LngLat goal, PathPlanner planner, Order order, long startTicks){
+        FlightPathBuffer orderPath = new FlightPathBuffer();
+        if (!appendOrderPathToGoal(orderPath, position, goal, planner, order, startTicks)){
+            return null;
+        }
+        return new ArrayList<>(orderPath.asList());
+    }
+
+    /**
+     * Adds the drone moves from the starting position to the goal, followed by a hover, to the end of a flightpath.
+     * @param flightpath    The flightpath the moves are added to.
+     * @param position  Starting point of the drone.
+     * @param goal      Finishing point of the drone's flightpath.
+     * @param planner   The planner used to find the moves to the goal.
+     * @param order     The order which the drone is attempting to deliver.
+     * @param startTicks         The initial number of ticks of the first calculation.
+     * @return          Boolean for whether a path to the goal was found, the flightpath is unchanged if not.
+     */
+    public static boolean appendOrderPathToGoal(FlightPathBuffer flightpath, LngLat position, LngLat goal, PathPlanner planner, Order order, long startTicks){
+        float[] moves = planner.planMoves(position, goal);
+        if (moves == null){
+            return false;
+        }
+        double longitude = position.longitude();
+        double latitude = position.latitude();
+        for (float move : moves) {
+            CompassDirection direction = CompassDirection.fromAngle(move);
             // add the move to the flight path for that order
-            orderPath.add(new DroneMove(order.orderNo(), position.longitude(), position.latitude(), Float.toString(bestMove), newPosition.longitude(), newPosition.latitude(), System.currentTimeMillis() - startTicks));
-            // mark the position of the drone as explored
-            explored.add(position);
-            position = newPosition;
+            flightpath.addMove(order.orderNo(), longitude, latitude, direction, System.currentTimeMillis() - startTicks);
+            longitude = direction.nextLongitude(longitude);
+            latitude = direction.nextLatitude(latitude);
         }
-        orderPath.add(new DroneMove(order.orderNo(), position.longitude(), position.latitude() , position.longitude(), position.latitude(), System.currentTimeMillis() - startTicks));
-        return orderPath;
+        flightpath.addHover(order.orderNo(), longitude, latitude, System.currentTimeMillis() - startTicks);
+        return true;
     }
 
     /**
@@ -155,8 +524,7 @@ public class App {
      */
     public static void writeFlightPath(List<DroneMove> flightpath, String date){
         try{
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.writeValue(Paths.get("resultfiles/flightpath-" + date + ".json").toFile(), flightpath);
+            ResultWriter.writeFlightpath(ResultWriter.resultFile("flightpath-" + date + ".json", false), flightpath, false);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -184,8 +552,7 @@ public class App {
      */
     public static void writeDeliveries(String date, Delivery[] deliveries){
         try{
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.writeValue(Paths.get("resultfiles/deliveries-" + date + ".json").toFile(), deliveries);
+            ResultWriter.writeDeliveries(ResultWriter.resultFile("deliveries-" + date + ".json", false), deliveries, false);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -199,20 +566,52 @@ public class App {
      * @param noFlyZone The No-Fly zone the drone avoids.
      * @param startTicks    The number of ticks the flightpath calculation started at.
      * @param centralURL    URL from which the central area is accessed.
-     * @return  Section of the flightpath, as a list of drone moves.
+     * @return  Section of the flightpath, as a list of drone moves, or null if the restaurant can't be reached.
      */
     public static List<DroneMove> makeFullOrderPath(LngLat position, Order order, Restaurant restaurant, MultiPolygon noFlyZone, long startTicks, URL centralURL){
+        return makeFullOrderPath(position, order, restaurant, new AStarPathPlanner(noFlyZone, centralURL), startTicks);
+    }
+
+    /**
+     * Makes the flightpath of the drone for one specific order, starting and finishing close to a specific point and going to a specific restaurant.
+     * @param position  Starting position of the drone.
+     * @param order The order the drone is delivering.
+     * @param restaurant    The restaurant the drone is delivering from.
+     * @param planner   The planner used to find the path to the restaurant.
+     * @param startTicks    The number of ticks the flightpath calculation started at.
+     * @return  Section of the flightpath, as a list of drone moves, or null if the restaurant can't be reached.
+     */
+    public static List<DroneMove> makeFullOrderPath(LngLat position, Order order, Restaurant restaurant, PathPlanner planner, long startTicks){
+        FlightPathBuffer orderPath = new FlightPathBuffer();
+        if (!appendFullOrderPath(orderPath, position, order, restaurant, planner, startTicks)){
+            return null;
+        }
+        return new ArrayList<>(orderPath.asList());
+    }
+
+    /**
+     * Adds the drone moves for one specific order to the end of a flightpath, going to a specific restaurant and back
+     * to exactly where it started, hovering at each end.
+     * @param flightpath    The flightpath the moves are added to.
+     * @param position  Starting position of the drone.
+     * @param order The order the drone is delivering.
+     * @param restaurant    The restaurant the drone is delivering from.
+     * @param planner   The planner used to find the path to the restaurant.
+     * @param startTicks    The number of ticks the flightpath calculation started at.
+     * @return  Boolean for whether the restaurant can be reached, the flightpath is unchanged if not.
+     */
+    public static boolean appendFullOrderPath(FlightPathBuffer flightpath, LngLat position, Order order, Restaurant restaurant, PathPlanner planner, long startTicks){
+        int start = flightpath.size();
         // make the one-way order path from the start location to the restaurant for the order
-        List<DroneMove> orderPath = (makeOrderPathToGoal(position, new LngLat(restaurant.longitude(), restaurant.latitude()), noFlyZone, order, startTicks, centralURL));
-        // iterate through the flight path in reverse order
-        for (int i = orderPath.size() - 2; i >= 0; i--){
-            // move the drone in the reverse direction as the move in the path
-            float newAngle = ((Float.parseFloat(orderPath.get(i).getAngle())+ 180) % 360);
-            LngLat pos = new LngLat(orderPath.get(orderPath.size()-1).getToLongitude(), orderPath.get(orderPath.size()-1).getToLatitude());
-            orderPath.add(new DroneMove(order.orderNo(), orderPath.get(orderPath.size()-1).getToLongitude(), orderPath.get(orderPath.size()-1).getToLatitude(), Float.toString(newAngle), pos.nextPosition(newAngle).longitude(), pos.nextPosition(newAngle).latitude(), System.currentTimeMillis() - startTicks));
+        if (!appendOrderPathToGoal(flightpath, position, new LngLat(restaurant.longitude(), restaurant.latitude()), planner, order, startTicks)){
+            return false;
         }
-        orderPath.add(new DroneMove(order.orderNo(), orderPath.get(orderPath.size()-1).getToLongitude(), orderPath.get(orderPath.size()-1).getToLatitude(),  orderPath.get(orderPath.size()-1).getToLongitude(), orderPath.get(orderPath.size()-1).getToLatitude(), System.currentTimeMillis() - startTicks));
-        return orderPath;
+        // move the drone back through the path in reverse, back to the exact point it came from, so the trip finishes
+        // exactly where it started
+        flightpath.addReversed(start, flightpath.size() - 1, startTicks);
+        int last = flightpath.size() - 1;
+        flightpath.addHover(order.orderNo(), flightpath.getToLongitude(last), flightpath.getToLatitude(last), System.currentTimeMillis() - startTicks);
+        return true;
     }
     /**
      * Finds the best legal unexplored drone move at a given position, trying to get to a given goal.
@@ -224,34 +623,77 @@ public class App {
      * @return  A float for the best move.
      */
     public static float findBestMove(LngLat position, LngLat goal, MultiPolygon noFlyZone, List<LngLat> explored,  URL centralURL){
+        PositionIndex index = new PositionIndex();
+        for (LngLat point : explored){
+            index.add(point);
+        }
+        return findBestMove(position, goal, noFlyZone, index, centralURL);
+    }
+
+    /**
+     * Finds the best legal unexplored drone move at a given position, trying to get to a given goal.
+     * @param position  Current position of the drone, as a LngLat.
+     * @param goal      Goal the drone is trying to get to, as a LngLat.
+     * @param noFlyZone No-Fly zones that can't be flown through, as a mapbox MultiPolygon object.
+     * @param explored  Index of the points already explored by the drone on the path to the goal.
+     * @param centralURL    URL of the Central Area
+     * @return  A float for the best move, or -1 if there is no legal unexplored move.
+     */
+    public static float findBestMove(LngLat position, LngLat goal, MultiPolygon noFlyZone, PositionIndex explored,  URL centralURL){
+        return findBestMove(position, goal, NoFlyZoneSet.of(noFlyZone), explored, CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Finds the best legal unexplored drone move at a given position, trying to get to a given goal.
+     * @param position  Current position of the drone, as a LngLat.
+     * @param goal      Goal the drone is trying to get to, as a LngLat.
+     * @param noFlyZones    No-Fly zones that can't be flown through, compiled once by the caller.
+     * @param explored  Index of the points already explored by the drone on the path to the goal.
+     * @param centralArea   The central area.
+     * @return  A float for the best move, or -1 if there is no legal unexplored move.
+     */
+    public static float findBestMove(LngLat position, LngLat goal, NoFlyZoneSet noFlyZones, PositionIndex explored, CentralArea centralArea){
+        boolean inCentral = centralArea.contains(position.longitude(), position.latitude());
         float bestMove = -1;
         double bestDistance = 1000;
+        // rejected candidates are counted locally and only added to the metrics once
+        int rejectedExplored = 0;
+        int rejectedNoFly = 0;
+        int rejectedCentral = 0;
         // search through all possible moves
-        for (float i = 0; i < 360; i += 22.5){
-            boolean visited = false;
+        for (int d = 0; d < CompassDirection.COUNT; d++){
+            CompassDirection direction = CompassDirection.get(d);
+            double nextLongitude = direction.nextLongitude(position.longitude());
+            double nextLatitude = direction.nextLatitude(position.latitude());
             // check point has not already been explored on the path
-            for (LngLat point: explored){
-                // if possible move is close to a point that has already been explored, mark as visited
-                if (position.nextPosition(i).closeTo(point)){
-                    visited = true;
-                    break;
-                }
+            if (explored.containsCloseTo(nextLongitude, nextLatitude)) {
+                rejectedExplored++;
+                continue;
             }
-            if (!visited) {
-                // check if the move would cause the flightpath to go through the no-fly zone
-                boolean intersects = NoFlyZone.intersectsNoFlyZones(noFlyZone, position, i);
-                if (!intersects) {
-                    // if the move would be an improvement compared to the current best move (smaller euclidean distance to the goal)
-                    if (position.nextPosition(i).distanceTo(goal) < bestDistance) {
-                        // if the move has left central area it cannot return
-                        if (position.inCentralArea(centralURL) || !position.nextPosition(i).inCentralArea(centralURL)) {
-                            // select the current move as a new best
-                            bestMove = i;
-                            bestDistance = position.nextPosition(i).distanceTo(goal);
-                        }
-                    }
-                }
+            // if the move has left central area it cannot return, checked for every candidate in the same order as
+            // AStarPathPlanner so the counts mean the same and don't depend on the order the directions are tried in
+            if (!inCentral && centralArea.contains(nextLongitude, nextLatitude)) {
+                rejectedCentral++;
+                continue;
+            }
+            // check if the move would cause the flightpath to go through the no-fly zone
+            if (noFlyZones.intersects(position.longitude(), position.latitude(), nextLongitude, nextLatitude)) {
+                rejectedNoFly++;
+                continue;
             }
+            // if the move would be an improvement compared to the current best move (smaller euclidean distance to the goal)
+            double distance = goal.distanceTo(nextLongitude, nextLatitude);
+            if (distance < bestDistance) {
+                // select the current move as a new best
+                bestMove = direction.getAngle();
+                bestDistance = distance;
+            }
+        }
+        if (Metrics.isEnabled()){
+            Metrics.FIND_BEST_MOVE_CALLS.increment();
+            Metrics.REJECTED_EXPLORED.add(rejectedExplored);
+            Metrics.REJECTED_NO_FLY.add(rejectedNoFly);
+            Metrics.REJECTED_CENTRAL.add(rejectedCentral);
         }
         return bestMove;
     }
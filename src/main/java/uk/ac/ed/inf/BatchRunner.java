@@ -0,0 +1,116 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Entry point for planning a range of dates in one run, for backfills and reprocessing. The restaurants, No-Fly zones
+ * and central area are fetched once and shared, then each date is planned on a fixed pool of worker threads and its
+ * deliveries, flightpath and drone files are written as with App.
+ */
+public class BatchRunner {
+    /**
+     * Plans every date in a range.
+     * @param args startDate endDate (the first and last dates for which the orders are processed, inclusive) baseUrlString
+     *             (the URL base to which REST-requests are made), optionally followed by --threads=n to set the number of
+     *             worker threads, --planner=astar|greedy|visibility|flowfield to choose how paths are planned,
+     *             along with the other flags App accepts for planning each day.
+     */
+    public static void main(String[] args) {
+        // check if enough command-line arguments have been entered
+        if (args.length < 3) {
+            System.err.println("Invalid arguments, please input start date, end date and then url");
+            return;
+        }
+        List<String> dates = dateRange(args[0], args[1]);
+        if (dates == null) {
+            return;
+        }
+        String baseUrlStr = args[2].endsWith("/") ? args[2] : args[2] + "/";
+        RunOptions options = new RunOptions(args, 3);
+        Metrics.setEnabled(options.has("metrics"));
+        try {
+            // fetch the data shared by every date once, the central area is loaded before the workers start using it
+            RestDataSource source = App.dataSource(baseUrlStr, options);
+            Restaurant[] restaurants = source.getRestaurants();
+            MultiPolygon noFlyZone = source.getNoFlyZones();
+            PathPlanner planner = App.makeCachedPlanner(options, restaurants, new NoFlyZoneSet(noFlyZone), source.getCentralArea());
+            int threads = Math.max(1, options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+            int planned = planDates(dates, source, restaurants, planner, threads, options);
+            System.out.println("Planned " + planned + " of " + dates.size() + " days");
+            Metrics.writeSummary(options);
+        } catch (IOException e) {
+            System.err.println("I/O Exception, please check connection and input data");
+        }
+    }
+
+    /**
+     * Plans each date on a pool of worker threads and writes its files, skipping dates without orders.
+     * @param dates The dates to plan.
+     * @param source  The source the orders of each date are fetched from.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths, which is shared by all the workers.
+     * @param threads   Number of worker threads.
+     * @param options   The command-line flags used to plan each day.
+     * @return  Number of dates which had orders and were planned.
+     */
+    public static int planDates(List<String> dates, RestDataSource source, Restaurant[] restaurants, PathPlanner planner, int threads, RunOptions options){
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> days = new ArrayList<>();
+            for (String date : dates) {
+                days.add(workers.submit(() -> App.runDay(date, source, restaurants, planner, options)));
+            }
+            int planned = 0;
+            for (int i = 0; i < days.size(); i++) {
+                try {
+                    if (days.get(i).get()) {
+                        planned++;
+                    }
+                } catch (ExecutionException e) {
+                    System.err.println("Could not plan " + dates.get(i) + ": " + e.getCause());
+                }
+            }
+            return planned;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists every date from the start to the end, inclusive, in the yyyy-mm-dd format used by the REST server.
+     * @param start The first date.
+     * @param end   The last date.
+     * @return  The dates in order, or null if either date is invalid or the end is before the start.
+     */
+    public static List<String> dateRange(String start, String end){
+        try {
+            LocalDate first = LocalDate.parse(start);
+            LocalDate last = LocalDate.parse(end);
+            if (last.isBefore(first)) {
+                System.err.println("End date " + end + " is before start date " + start);
+                return null;
+            }
+            List<String> dates = new ArrayList<>();
+            for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+                dates.add(date.toString());
+            }
+            return dates;
+        } catch (DateTimeParseException e) {
+            System.err.println("Invalid date, please use the format yyyy-mm-dd");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form of a flightpath file, stored column by column so each field can be read without the others.
+ * The order numbers are stored once in a dictionary and referred to by index, the angle of each move is the index of
+ * its compass direction in one byte, the coordinates are raw doubles and the ticks are stored as differences from the
+ * previous move. Opening a file maps it into memory, and the moves are read straight from the mapping when asked for.
+ * Converting a JSON flightpath to this form and back gives exactly the same file.
+ * <p>
+ * Layout, big-endian: the magic number and version, the number of moves, the dictionary of order numbers (a count,
+ * then each as a 2 byte length and UTF-8 bytes), the width in bytes of an order number index, the order number index
+ * and direction byte of each move, padding to a multiple of 8 bytes, the from longitude, from latitude, to longitude
+ * and to latitude columns of doubles, and finally the tick differences as zig-zag variable length integers.
+ */
+public class BinaryFlightpath {
+    private static final int MAGIC = 0x50444650;
+    private static final byte VERSION = 1;
+    // direction byte of a hover move
+    private static final byte HOVER = (byte) 0xFF;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final String[] orderNumbers;
+    private final int indexWidth;
+    private final int orderColumn;
+    private final int angleColumn;
+    private final int coordinateColumns;
+    private final long[] ticks;
+
+    private BinaryFlightpath(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION){
+            throw new IOException("Not a binary flightpath file");
+        }
+        this.size = buffer.getInt(5);
+        int position = 9;
+        orderNumbers = new String[buffer.getInt(position)];
+        position += 4;
+        for (int i = 0; i < orderNumbers.length; i++){
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            byte[] bytes = new byte[length];
+            buffer.get(position + 2, bytes);
+            orderNumbers[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 2 + length;
+        }
+        indexWidth = buffer.get(position++);
+        orderColumn = position;
+        angleColumn = orderColumn + size * indexWidth;
+        coordinateColumns = align(angleColumn + size);
+        // the ticks can't be read at random as they are differences, so they are added up once here
+        ticks = new long[size];
+        position = coordinateColumns + size * 4 * Double.BYTES;
+        long tick = 0;
+        for (int i = 0; i < size; i++){
+            long encoded = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                encoded |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            tick += (encoded >>> 1) ^ -(encoded & 1);
+            ticks[i] = tick;
+        }
+    }
+
+    /**
+     * Maps a binary flightpath file into memory.
+     * @param file  The file to open.
+     * @return  The flightpath, read from the mapping.
+     * @throws IOException  If the file can't be read or is not a binary flightpath file.
+     */
+    public static BinaryFlightpath open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)){
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryFlightpath(mapped);
+        }
+    }
+
+    /**
+     * Writes a flightpath in the binary form.
+     * @param file  The file to write, which is replaced if it exists.
+     * @param flightpath    The flightpath the drone took.
+     * @throws IOException  If the file can't be written, or a move has an angle that is not a compass direction.
+     */
+    public static void write(Path file, List<DroneMove> flightpath) throws IOException {
+        int size = flightpath.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> orderNumbers = new ArrayList<>();
+        int[] indices = new int[size];
+        byte[] directions = new byte[size];
+        int i = 0;
+        for (DroneMove move : flightpath){
+            indices[i] = dictionary.computeIfAbsent(move.getOrderNo(), orderNo -> {
+                orderNumbers.add(orderNo);
+                return orderNumbers.size() - 1;
+            });
+            directions[i++] = direction(move.getAngle());
+        }
+        int indexWidth = orderNumbers.size() <= 256 ? 1 : orderNumbers.size() <= 65536 ? 2 : 4;
+        ResultWriter.createParent(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(size);
+            out.writeInt(orderNumbers.size());
+            for (String orderNo : orderNumbers){
+                byte[] bytes = orderNo.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeByte(indexWidth);
+            for (int index : indices){
+                if (indexWidth == 1){
+                    out.writeByte(index);
+                } else if (indexWidth == 2){
+                    out.writeShort(index);
+                } else {
+                    out.writeInt(index);
+                }
+            }
+            out.write(directions);
+            // pad so the doubles start on a multiple of 8 bytes
+            while (out.size() % Double.BYTES != 0){
+                out.writeByte(0);
+            }
+            for (DroneMove move : flightpath){
+                out.writeDouble(move.getFromLongitude());
+            }
+            for (DroneMove move : flightpath){
+                out.writeDouble(move.getFromLatitude());
+            }
+            for (DroneMove move : flightpath){
+                out.writeDouble(move.getToLongitude());
+            }
+            for (DroneMove move : flightpath){
+                out.writeDouble(move.getToLatitude());
+            }
+            long previous = 0;
+            for (DroneMove move : flightpath){
+                long delta = move.getTicksSinceStartOfCalculation() - previous;
+                previous = move.getTicksSinceStartOfCalculation();
+                // zig-zag encoding keeps small negative differences small
+                long encoded = (delta << 1) ^ (delta >> 63);
+                while ((encoded & ~0x7FL) != 0){
+                    out.writeByte((int) (encoded & 0x7F) | 0x80);
+                    encoded >>>= 7;
+                }
+                out.writeByte((int) encoded);
+            }
+        }
+    }
+
+    /**
+     * Converts a JSON flightpath file to the binary form.
+     * @param json  The JSON flightpath file, as written by App.writeFlightPath.
+     * @param binary    The binary file to write.
+     * @throws IOException  If either file can't be read or written.
+     */
+    public static void fromJson(Path json, Path binary) throws IOException {
+        write(binary, readJson(json));
+    }
+
+    /**
+     * Converts a binary flightpath file back to the JSON form, streaming the moves from the mapping.
+     * @param binary    The binary flightpath file.
+     * @param json  The JSON flightpath file to write.
+     * @throws IOException  If either file can't be read or written.
+     */
+    public static void toJson(Path binary, Path json) throws IOException {
+        ResultWriter.writeFlightpath(json, open(binary).asList(), false);
+    }
+
+    /**
+     * Reads a JSON flightpath file.
+     * @param json  The JSON flightpath file, as written by App.writeFlightPath.
+     * @return  The moves of the flightpath.
+     * @throws IOException  If the file can't be read or is not a flightpath.
+     */
+    public static List<DroneMove> readJson(Path json) throws IOException {
+        List<DroneMove> flightpath = new ArrayList<>();
+        try (JsonParser parser = JsonCodecs.FACTORY.createParser(json.toFile())){
+            if (parser.nextToken() != JsonToken.START_ARRAY){
+                throw new IOException("Expected an array of moves in " + json);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT){
+                flightpath.add(JsonCodecs.DRONE_MOVE.read(parser));
+            }
+        }
+        return flightpath;
+    }
+
+    /**
+     * Converts flightpath files between the two forms, by their extension.
+     * @param args  The file to convert, ending in .json or .bin, then the file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Invalid arguments, please input the file to convert and then the file to write");
+            return;
+        }
+        try {
+            if (args[0].endsWith(".bin")) {
+                toJson(Paths.get(args[0]), Paths.get(args[1]));
+            } else {
+                fromJson(Paths.get(args[0]), Paths.get(args[1]));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not convert " + args[0] + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of moves.
+     * @return  The number of moves in the flightpath.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Order number of the order being delivered.
+     */
+    public String getOrderNo(int i){
+        int position = orderColumn + i * indexWidth;
+        int index = indexWidth == 1 ? Byte.toUnsignedInt(buffer.get(position))
+                : indexWidth == 2 ? Short.toUnsignedInt(buffer.getShort(position)) : buffer.getInt(position);
+        return orderNumbers[index];
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Angle the drone moved in, as written in the flightpath file, or "null" when hovering.
+     */
+    public String getAngle(int i){
+        byte direction = buffer.get(angleColumn + i);
+        return direction == HOVER ? "null" : CompassDirection.get(direction).getAngleString();
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Longitude of the drone before the move.
+     */
+    public double getFromLongitude(int i){
+        return buffer.getDouble(coordinateColumns + i * Double.BYTES);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Latitude of the drone before the move.
+     */
+    public double getFromLatitude(int i){
+        return buffer.getDouble(coordinateColumns + (size + i) * Double.BYTES);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Longitude of the drone after the move.
+     */
+    public double getToLongitude(int i){
+        return buffer.getDouble(coordinateColumns + (2 * size + i) * Double.BYTES);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Latitude of the drone after the move.
+     */
+    public double getToLatitude(int i){
+        return buffer.getDouble(coordinateColumns + (3 * size + i) * Double.BYTES);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Number of milliseconds elapsed since the drone's flightpath started being calculated.
+     */
+    public long getTicksSinceStartOfCalculation(int i){
+        return ticks[i];
+    }
+
+    /**
+     * Returns a move.
+     * @param i Index of the move.
+     * @return  The move, read from the mapping.
+     */
+    public DroneMove getMove(int i){
+        return new DroneMove(getOrderNo(i), getFromLongitude(i), getFromLatitude(i), getAngle(i), getToLongitude(i),
+                getToLatitude(i), getTicksSinceStartOfCalculation(i));
+    }
+
+    /**
+     * Returns the moves as a list, each read from the mapping when it is asked for rather than all copied at once.
+     * @return  A read-only list of the moves.
+     */
+    public List<DroneMove> asList(){
+        return new AbstractList<>() {
+            @Override
+            public DroneMove get(int index) {
+                return getMove(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static byte direction(String angle) throws IOException {
+        if (angle.equals("null")){
+            return HOVER;
+        }
+        try {
+            CompassDirection direction = CompassDirection.fromAngle(Double.parseDouble(angle));
+            // the angle must be written exactly as the direction writes it, or it would change when read back
+            if (direction != null && direction.getAngleString().equals(angle)){
+                return (byte) direction.ordinal();
+            }
+        } catch (NumberFormatException e) {
+            // not a number, reported below
+        }
+        throw new IOException("Angle " + angle + " is not a compass direction");
+    }
+
+    private static int align(int position){
+        return (position + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.net.URL;
+
+/**
+ * Path planner which remembers the routes found by another planner in a RouteCache, so a route is only planned again
+ * when the map changes. Routes are keyed by the start position rounded to a small grid, the goal, and a fingerprint of
+ * the No-Fly zones, the central area and the planner used. As the start may differ slightly from the one the route was
+ * planned from, a cached route is replayed and checked to still be legal before it is used.
+ */
+public class CachingPathPlanner implements PathPlanner {
+    /** Size in degrees of the grid start positions are rounded to. */
+    public static final double START_QUANTUM = 1e-6;
+
+    private final PathPlanner planner;
+    private final RouteCache cache;
+    private final NoFlyZoneSet noFlyZones;
+    private final CentralArea centralArea;
+    private final long fingerprint;
+
+    /**
+     * Creates a caching planner.
+     * @param planner   The planner used when a route is not cached.
+     * @param cache     The cache routes are stored in.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     */
+    public CachingPathPlanner(PathPlanner planner, RouteCache cache, MultiPolygon noFlyZone, URL centralURL){
+        this(planner, cache, NoFlyZoneSet.of(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates a caching planner from No-Fly zones which have already been compiled, such as the ones the wrapped
+     * planner uses.
+     * @param planner   The planner used when a route is not cached.
+     * @param cache     The cache routes are stored in.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     */
+    public CachingPathPlanner(PathPlanner planner, RouteCache cache, NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        this.planner = planner;
+        this.cache = cache;
+        this.noFlyZones = noFlyZones;
+        this.centralArea = centralArea;
+        long hash = 31 * noFlyZones.fingerprint() + planner.getClass().getName().hashCode();
+        for (LngLat point : centralArea.getPoints()){
+            hash = 31 * hash + Double.doubleToLongBits(point.longitude());
+            hash = 31 * hash + Double.doubleToLongBits(point.latitude());
+        }
+        this.fingerprint = hash;
+    }
+
+    /**
+     * Returns the cached route from the start to the goal if it is still legal, otherwise plans and caches a new one.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        String key = key(start, goal);
+        byte[] route = cache.get(key);
+        if (route != null && isLegal(start, goal, route)){
+            float[] moves = new float[route.length];
+            for (int i = 0; i < route.length; i++){
+                moves[i] = CompassDirection.get(route[i]).getAngle();
+            }
+            return moves;
+        }
+        float[] moves = planner.planMoves(start, goal);
+        if (moves != null){
+            route = new byte[moves.length];
+            for (int i = 0; i < moves.length; i++){
+                route[i] = (byte) CompassDirection.fromAngle(moves[i]).ordinal();
+            }
+            cache.put(key, route);
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the key a route is cached under.
+     * @param start Starting position of the drone.
+     * @param goal  Goal of the route.
+     * @return  The cache key, which is safe to use as a file name.
+     */
+    public String key(LngLat start, LngLat goal){
+        return String.format("%016x_%d_%d_%016x_%016x", fingerprint,
+                Math.round(start.longitude() / START_QUANTUM), Math.round(start.latitude() / START_QUANTUM),
+                Double.doubleToLongBits(goal.longitude()), Double.doubleToLongBits(goal.latitude()));
+    }
+
+    /**
+     * Replays a route from the start, checking every move avoids the No-Fly zones and does not re-enter the central area,
+     * and that the route finishes close to the goal.
+     */
+    private boolean isLegal(LngLat start, LngLat goal, byte[] route){
+        double longitude = start.longitude();
+        double latitude = start.latitude();
+        boolean inCentral = centralArea.contains(longitude, latitude);
+        for (byte index : route){
+            if (goal.closeTo(longitude, latitude)){
+                return false;
+            }
+            CompassDirection direction = CompassDirection.get(index);
+            double nextLongitude = direction.nextLongitude(longitude);
+            double nextLatitude = direction.nextLatitude(latitude);
+            boolean nextInCentral = centralArea.contains(nextLongitude, nextLatitude);
+            if ((!inCentral && nextInCentral) || noFlyZones.intersects(longitude, latitude, nextLongitude, nextLatitude)){
+                return false;
+            }
+            longitude = nextLongitude;
+            latitude = nextLatitude;
+            inCentral = nextInCentral;
+        }
+        return goal.closeTo(longitude, latitude);
+    }
+}
@@ -1,17 +1,16 @@
 package uk.ac.ed.inf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
 /**
 Singleton central area class which contains an array of four LngLat objects which represent the 4 corners of the rectangular central area.
+The instance is safe to share between threads, as its points are never changed after it is created.
  */
 public class CentralArea {
-    private static CentralArea instance = null;
-    private LngLat[] points;
+    private static volatile CentralArea instance = null;
+    private final LngLat[] points;
 
     /**
      * Returns the four vertices of the central area, starting top left and moving anti-clockwise.
@@ -21,19 +20,70 @@ public class CentralArea {
         return points;
     }
 
+    /**
+     * Returns whether a point is strictly inside the central area.
+     * @param longitude Longitude of the point.
+     * @param latitude  Latitude of the point.
+     * @return Boolean value for whether the point is within the central area.
+     */
+    public boolean contains(double longitude, double latitude){
+        if (longitude <= points[0].longitude() || latitude >= points[0].latitude()){
+            return false;
+        }
+        if (longitude <= points[1].longitude() || latitude <= points[1].latitude()){
+            return false;
+        }
+        if (longitude >= points[2].longitude() || latitude <= points[2].latitude()){
+            return false;
+        }
+        return !(longitude >= points[3].longitude()) && !(latitude >= points[3].latitude());
+    }
+
     /**
      * Private constructor class for CentralArea, this performs a REST-request which gets a JSON of the longitude and latitude
      * co-ordinates of the corners of the central area and converts this into an array of LngLat objects.
      */
     private CentralArea(URL url){
+        LngLat[] points = null;
         try {
             // perform REST-request and turn result into array of LngLat objects, setting the points attribute to this array
-            points = new ObjectMapper().readValue(url, LngLat[].class);
+            points = JsonCodecs.readArray(url, LngLat.class);
         } catch (MalformedURLException e) {
             e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        this.points = points;
+    }
+
+    private CentralArea(LngLat[] points){
+        this.points = points;
+    }
+
+    /**
+     * Loads the Singleton with central area points which have already been fetched, such as from a snapshot, so
+     * getInstance does not perform a REST-request. If the Singleton has already been loaded successfully it is kept.
+     * @param points    The four vertices of the central area, starting top left and moving anti-clockwise.
+     * @return The Singleton CentralArea object.
+     */
+    public static CentralArea load(LngLat[] points){
+        synchronized (CentralArea.class){
+            if (instance == null || instance.points == null){
+                instance = new CentralArea(points);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Creates a central area from points which have already been fetched, separate from the Singleton, for a REST
+     * server whose central area differs from the one the Singleton was loaded with. It is passed to the planners
+     * explicitly, as getInstance only ever returns the Singleton.
+     * @param points    The four vertices of the central area, starting top left and moving anti-clockwise.
+     * @return A new CentralArea object.
+     */
+    public static CentralArea fromPoints(LngLat[] points){
+        return new CentralArea(points);
     }
 
     /**
@@ -41,14 +91,18 @@ public class CentralArea {
      * @return The Singleton CentralArea object, which contains the co-ordinates of the central area.
      */
     public static CentralArea getInstance(URL url){
-        // if there currently does not exist an instance of the CentralArea class, create one
-        if (instance == null){
-            instance = new CentralArea(url);
-            return instance;
-        }
-        // otherwise return the existing instance of the CentralArea class
-        else{
-            return instance;
+        CentralArea current = instance;
+        // if there currently does not exist an instance of the CentralArea class, or the last request failed, create one
+        if (current == null || current.points == null){
+            // only one thread performs the request, the others wait for it and then use its instance
+            synchronized (CentralArea.class){
+                current = instance;
+                if (current == null || current.points == null){
+                    current = new CentralArea(url);
+                    instance = current;
+                }
+            }
         }
+        return current;
     }
 }
@@ -0,0 +1,93 @@
+package uk.ac.ed.inf;
+
+/**
+ * The 16 compass directions the drone can move in, 22.5 degrees apart with 0 degrees being North.
+ * The change in longitude and latitude of a move in each direction is worked out once, in exactly the same way
+ * LngLat.nextPosition used to for every move, so stepping the drone with this table gives identical positions.
+ */
+public enum CompassDirection {
+    N(0), NNE(22.5f), NE(45), ENE(67.5f), E(90), ESE(112.5f), SE(135), SSE(157.5f),
+    S(180), SSW(202.5f), SW(225), WSW(247.5f), W(270), WNW(292.5f), NW(315), NNW(337.5f);
+
+    /** Number of compass directions. */
+    public static final int COUNT = 16;
+    /** Distance in degrees the drone travels in a single move. */
+    public static final double MOVE_LENGTH = 0.00015;
+    private static final CompassDirection[] DIRECTIONS = values();
+
+    private final float angle;
+    private final String angleString;
+    private final double longitudeOffset;
+    private final double latitudeOffset;
+
+    CompassDirection(float angle){
+        this.angle = angle;
+        this.angleString = Float.toString(angle);
+        this.longitudeOffset = Math.sin(Math.toRadians(angle)) * MOVE_LENGTH;
+        this.latitudeOffset = Math.cos(Math.toRadians(angle)) * MOVE_LENGTH;
+    }
+
+    /**
+     * Returns the direction with a given index, 0 being North and going clockwise.
+     * @param index Index of the direction, between 0 and 15.
+     * @return  The direction with that index.
+     */
+    public static CompassDirection get(int index){
+        return DIRECTIONS[index];
+    }
+
+    /**
+     * Returns the direction of a move angle.
+     * @param angle The angle of the move in degrees.
+     * @return  The direction with that angle, or null if the angle is not one of the 16 compass directions.
+     */
+    public static CompassDirection fromAngle(double angle){
+        double index = angle / 22.5;
+        if (index >= 0 && index < COUNT && index == Math.floor(index)){
+            return DIRECTIONS[(int) index];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the angle of the direction.
+     * @return  Angle in degrees, between 0 and 337.5.
+     */
+    public float getAngle(){
+        return angle;
+    }
+
+    /**
+     * Returns the angle of the direction as written in the flightpath file.
+     * @return  The angle as a string, the same as Float.toString(getAngle()).
+     */
+    public String getAngleString(){
+        return angleString;
+    }
+
+    /**
+     * Returns the direction pointing the opposite way.
+     * @return  The direction 180 degrees from this one.
+     */
+    public CompassDirection opposite(){
+        return DIRECTIONS[(ordinal() + COUNT / 2) % COUNT];
+    }
+
+    /**
+     * Returns the longitude after a move in this direction.
+     * @param longitude Longitude before the move.
+     * @return  Longitude after the move.
+     */
+    public double nextLongitude(double longitude){
+        return longitude + longitudeOffset;
+    }
+
+    /**
+     * Returns the latitude after a move in this direction.
+     * @param latitude  Latitude before the move.
+     * @return  Latitude after the move.
+     */
+    public double nextLatitude(double latitude){
+        return latitude + latitudeOffset;
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a deliveries file one delivery at a time with Jackson's streaming generator, in the same format as
+ * App.writeDeliveries, so deliveries can be written as soon as their outcome is known instead of being kept until the end.
+ */
+public class DeliveriesWriter implements Closeable {
+    private final JsonGenerator generator;
+
+    /**
+     * Opens a deliveries file and starts the array of deliveries.
+     * @param file  The file to write, which is replaced if it exists.
+     * @throws IOException  If the file can't be opened.
+     */
+    public DeliveriesWriter(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Opens a deliveries file, optionally gzip compressed, and starts the array of deliveries.
+     * @param file  The file to write, which is replaced if it exists.
+     * @param gzip  Whether to gzip compress the file.
+     * @throws IOException  If the file can't be opened.
+     */
+    public DeliveriesWriter(Path file, boolean gzip) throws IOException {
+        generator = ResultWriter.open(file, gzip);
+        generator.writeStartArray();
+    }
+
+    /**
+     * Writes one delivery.
+     * @param delivery  The delivery, with its final outcome.
+     * @throws IOException  If writing fails.
+     */
+    public void write(Delivery delivery) throws IOException {
+        JsonCodecs.DELIVERY.write(generator, delivery);
+    }
+
+    /**
+     * Ends the array of deliveries and closes the file.
+     * @throws IOException  If writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+}
@@ -44,6 +44,14 @@ public class Delivery {
         return costInPence;
     }
 
+    /**
+     * Changes the outcome of the delivery.
+     * @param outcome   The new outcome.
+     */
+    void setOutcome(OrderOutcome outcome){
+        this.outcome = outcome.toString();
+    }
+
     /**
      * Takes in all the orders and returns an array of Delivery objects, with the validity of each order.
      * @param orders        Array of all the orders to be turned into Delivery objects.
@@ -51,10 +59,30 @@ public class Delivery {
      * @return An array of Delivery objects.
      */
     public static Delivery[] getDeliveries(Order[] orders, Restaurant[] restaurants){
+        return getDeliveries(orders, MenuIndex.of(restaurants));
+    }
+
+    /**
+     * Takes in all the orders and returns an array of Delivery objects, with the validity of each order.
+     * @param orders        Array of all the orders to be turned into Delivery objects.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @return An array of Delivery objects.
+     */
+    public static Delivery[] getDeliveries(Order[] orders, MenuIndex index){
+        return getDeliveries(orders, index.checkAll(orders));
+    }
+
+    /**
+     * Takes in all the orders and returns an array of Delivery objects, with the outcomes they have already been given.
+     * @param orders        Array of all the orders to be turned into Delivery objects.
+     * @param validations   The outcome of validating each order, see MenuIndex.checkAll.
+     * @return An array of Delivery objects.
+     */
+    public static Delivery[] getDeliveries(Order[] orders, MenuIndex.Validation[] validations){
         Delivery[] deliveries = new Delivery[orders.length];
         for (int i = 0; i < orders.length; i++) {
             // sets the order's outcome to the reason if invalid, else valid
-            deliveries[i] = new Delivery(orders[i].orderNo(), orders[i].getValidity(restaurants), orders[i].priceTotalInPence());
+            deliveries[i] = new Delivery(orders[i].orderNo(), validations[i].outcome(), orders[i].priceTotalInPence());
         }
         return deliveries;
     }
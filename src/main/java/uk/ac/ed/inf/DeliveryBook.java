@@ -0,0 +1,67 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The deliveries of a day indexed by order number, so the outcome of an order can be set without searching every
+ * delivery. Like Delivery.setDelivered, every delivery with a matching order number is changed, so duplicate order
+ * numbers behave as before.
+ */
+public class DeliveryBook {
+    private final Delivery[] deliveries;
+    // index of the first delivery with each order number
+    private final Map<String, Integer> first;
+    // index of the next delivery with the same order number as each delivery, or -1
+    private final int[] next;
+
+    /**
+     * Indexes an array of deliveries by order number.
+     * @param deliveries    Array of Delivery objects, which is changed in place.
+     */
+    public DeliveryBook(Delivery[] deliveries){
+        this.deliveries = deliveries;
+        this.first = new HashMap<>(deliveries.length * 2);
+        this.next = new int[deliveries.length];
+        Arrays.fill(next, -1);
+        // go backwards so each delivery is linked in front of the later ones with the same order number
+        for (int i = deliveries.length - 1; i >= 0; i--){
+            Integer later = first.put(deliveries[i].getOrderNo(), i);
+            if (later != null){
+                next[i] = later;
+            }
+        }
+    }
+
+    /**
+     * Returns the deliveries.
+     * @return  Array of Delivery objects.
+     */
+    public Delivery[] getDeliveries(){
+        return deliveries;
+    }
+
+    /**
+     * Changes the outcome of an order to Delivered.
+     * @param order The Order object for which the outcome needs to be changed.
+     */
+    public void setDelivered(Order order){
+        setOutcome(order, OrderOutcome.Delivered);
+    }
+
+    /**
+     * Changes the outcome of an order to ValidButNotDelivered.
+     * @param order The Order object for which the outcome needs to be changed.
+     */
+    public void setValidNotDelivered(Order order){
+        setOutcome(order, OrderOutcome.ValidButNotDelivered);
+    }
+
+    private void setOutcome(Order order, OrderOutcome outcome){
+        Integer index = first.get(order.orderNo());
+        for (int i = index == null ? -1 : index; i >= 0; i = next[i]){
+            deliveries[i].setOutcome(outcome);
+        }
+    }
+}
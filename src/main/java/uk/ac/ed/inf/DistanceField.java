@@ -0,0 +1,146 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Number of moves needed to reach one goal from every cell of a rectangular grid, along with the best direction to move
+ * in from each cell. The grid is filled by a breadth-first search backwards from the goal over the 16 compass
+ * directions. Each cell remembers the exact position the search first reached it at, and moves are stepped and checked
+ * against the No-Fly zones and the central area rule from those positions, so the stored directions form real paths.
+ * Following the field from any start position is then a matter of looking up the cells the drone moves through.
+ */
+public class DistanceField {
+    /** Width of a grid cell in degrees, half the length of a move. */
+    public static final double CELL_SIZE = CompassDirection.MOVE_LENGTH / 2;
+    /** Value stored for cells from which the goal can't be reached. */
+    public static final short UNREACHABLE = -1;
+
+    private final LngLat goal;
+    private final double minLongitude;
+    private final double minLatitude;
+    private final int width;
+    private final int height;
+    private final short[] moves;
+    private final byte[] directions;
+
+    private DistanceField(LngLat goal, double minLongitude, double minLatitude, int width, int height){
+        this.goal = goal;
+        this.minLongitude = minLongitude;
+        this.minLatitude = minLatitude;
+        this.width = width;
+        this.height = height;
+        this.moves = new short[width * height];
+        this.directions = new byte[width * height];
+        Arrays.fill(moves, UNREACHABLE);
+    }
+
+    /**
+     * Builds the distance field for a goal over a rectangular area.
+     * @param goal          The goal the drone is trying to get close to.
+     * @param minLongitude  Western edge of the area.
+     * @param minLatitude   Southern edge of the area.
+     * @param maxLongitude  Eastern edge of the area.
+     * @param maxLatitude   Northern edge of the area.
+     * @param noFlyZones    The No-Fly zones the drone avoids.
+     * @param centralArea   The central area, which the drone can't re-enter after leaving it.
+     * @return  The distance field.
+     */
+    public static DistanceField build(LngLat goal, double minLongitude, double minLatitude, double maxLongitude, double maxLatitude,
+                                      NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        int width = (int) Math.ceil((maxLongitude - minLongitude) / CELL_SIZE);
+        int height = (int) Math.ceil((maxLatitude - minLatitude) / CELL_SIZE);
+        DistanceField field = new DistanceField(goal, minLongitude, minLatitude, width, height);
+        int[] queue = new int[width * height];
+        int head = 0, tail = 0;
+        // exact position the search reached each cell at, so the moves stored form real paths rather than hops between cell centres
+        double[] longitudes = new double[width * height];
+        double[] latitudes = new double[width * height];
+        // every cell whose centre is close to the goal is reached with no moves
+        for (int cell = 0; cell < width * height; cell++){
+            if (goal.closeTo(field.centreLongitude(cell), field.centreLatitude(cell))){
+                field.moves[cell] = 0;
+                longitudes[cell] = field.centreLongitude(cell);
+                latitudes[cell] = field.centreLatitude(cell);
+                queue[tail++] = cell;
+            }
+        }
+        while (head < tail){
+            int cell = queue[head++];
+            for (int d = 0; d < CompassDirection.COUNT; d++){
+                // the position a move in this direction would have come from
+                CompassDirection direction = CompassDirection.get(d);
+                CompassDirection back = direction.opposite();
+                double fromLongitude = back.nextLongitude(longitudes[cell]);
+                double fromLatitude = back.nextLatitude(latitudes[cell]);
+                int previous = field.cellAt(fromLongitude, fromLatitude);
+                if (previous < 0 || field.moves[previous] != UNREACHABLE){
+                    continue;
+                }
+                double toLongitude = direction.nextLongitude(fromLongitude);
+                double toLatitude = direction.nextLatitude(fromLatitude);
+                // if the drone has left the central area it cannot return
+                if (!centralArea.contains(fromLongitude, fromLatitude) && centralArea.contains(toLongitude, toLatitude)){
+                    continue;
+                }
+                if (noFlyZones.intersects(fromLongitude, fromLatitude, toLongitude, toLatitude)){
+                    continue;
+                }
+                field.moves[previous] = (short) (field.moves[cell] + 1);
+                field.directions[previous] = (byte) d;
+                longitudes[previous] = fromLongitude;
+                latitudes[previous] = fromLatitude;
+                queue[tail++] = previous;
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Returns the goal of this field.
+     * @return  The goal.
+     */
+    public LngLat getGoal(){
+        return goal;
+    }
+
+    /**
+     * Returns the cell containing a point.
+     * @param longitude Longitude of the point.
+     * @param latitude  Latitude of the point.
+     * @return  Index of the cell, or -1 if the point is outside the grid.
+     */
+    public int cellAt(double longitude, double latitude){
+        int x = (int) Math.floor((longitude - minLongitude) / CELL_SIZE);
+        int y = (int) Math.floor((latitude - minLatitude) / CELL_SIZE);
+        if (x < 0 || y < 0 || x >= width || y >= height){
+            return -1;
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Returns the number of moves needed to reach the goal from a cell.
+     * @param cell  Index of the cell.
+     * @return  Number of moves, or UNREACHABLE.
+     */
+    public short movesFrom(int cell){
+        return moves[cell];
+    }
+
+    /**
+     * Returns the best direction to move in from a cell.
+     * @param cell  Index of the cell, which must not be UNREACHABLE or the goal.
+     * @return  The direction the search reached the cell from.
+     */
+    public CompassDirection directionFrom(int cell){
+        return CompassDirection.get(directions[cell]);
+    }
+
+    private double centreLongitude(int cell){
+        return minLongitude + (cell % width + 0.5) * CELL_SIZE;
+    }
+
+    private double centreLatitude(int cell){
+        return minLatitude + (cell / width + 0.5) * CELL_SIZE;
+    }
+}
@@ -0,0 +1,220 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the edges of the No-Fly zones, so a move only needs to be tested against the edges in the cells it touches.
+ * Only cells that contain an edge are stored: cell keys are kept in a primitive open-addressing table, and the edges of
+ * each cell are stored one after another in a single int array.
+ */
+public class EdgeGrid {
+    /** Default width of a grid cell in degrees, the length of one move. */
+    public static final double DEFAULT_CELL_SIZE = 0.00015;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // edges packed as fromLongitude, fromLatitude, toLongitude, toLatitude
+    private final double[] edges;
+    private final double cellSize;
+    // padding so rounding never leaves an edge out of a cell it touches
+    private final double padding;
+    private long[] keys = new long[64];
+    private int[] buckets = new int[64];
+    private int bucketCount = 0;
+    // the edges in bucket b are cellEdges[bucketStarts[b]] to cellEdges[bucketStarts[b + 1] - 1]
+    private final int[] bucketStarts;
+    private final int[] cellEdges;
+
+    /**
+     * Builds the grid over a set of edges.
+     * @param edges     Edges packed as fromLongitude, fromLatitude, toLongitude, toLatitude.
+     * @param cellSize  Width of a grid cell in degrees.
+     */
+    public EdgeGrid(double[] edges, double cellSize){
+        this.edges = edges;
+        this.cellSize = cellSize;
+        this.padding = cellSize * 1e-6;
+        Arrays.fill(keys, EMPTY);
+        // first pass finds the cells each edge touches and counts the edges in each cell
+        int[] counts = new int[16];
+        int[] pairBuckets = new int[16];
+        int[] pairEdges = new int[16];
+        int pairs = 0;
+        for (int e = 0; e < edges.length / 4; e++){
+            double ax = edges[4 * e], ay = edges[4 * e + 1], bx = edges[4 * e + 2], by = edges[4 * e + 3];
+            double minX = Math.min(ax, bx), maxX = Math.max(ax, bx);
+            double minY = Math.min(ay, by), maxY = Math.max(ay, by);
+            for (long x = cell(minX - padding); x <= cell(maxX + padding); x++){
+                // latitudes the edge covers within this column of cells
+                double low = minY, high = maxY;
+                if (ax != bx){
+                    double y0 = ay + (Math.max(x * cellSize, minX) - ax) / (bx - ax) * (by - ay);
+                    double y1 = ay + (Math.min((x + 1) * cellSize, maxX) - ax) / (bx - ax) * (by - ay);
+                    low = Math.max(minY, Math.min(y0, y1));
+                    high = Math.min(maxY, Math.max(y0, y1));
+                }
+                for (long y = cell(low - padding); y <= cell(high + padding); y++){
+                    int bucket = bucketOf(cellKey(x, y), true);
+                    if (bucket == counts.length){
+                        counts = Arrays.copyOf(counts, bucket * 2);
+                    }
+                    counts[bucket]++;
+                    if (pairs == pairBuckets.length){
+                        pairBuckets = Arrays.copyOf(pairBuckets, pairs * 2);
+                        pairEdges = Arrays.copyOf(pairEdges, pairs * 2);
+                    }
+                    pairBuckets[pairs] = bucket;
+                    pairEdges[pairs] = e;
+                    pairs++;
+                }
+            }
+        }
+        // second pass lays the edges of each cell out next to each other
+        bucketStarts = new int[bucketCount + 1];
+        for (int b = 0; b < bucketCount; b++){
+            bucketStarts[b + 1] = bucketStarts[b] + counts[b];
+        }
+        cellEdges = new int[pairs];
+        int[] filled = Arrays.copyOf(bucketStarts, bucketCount);
+        for (int i = 0; i < pairs; i++){
+            cellEdges[filled[pairBuckets[i]]++] = pairEdges[i];
+        }
+    }
+
+    /**
+     * Returns the number of cells that contain at least one edge.
+     * @return  Number of occupied cells.
+     */
+    public int getCellCount(){
+        return bucketCount;
+    }
+
+    /**
+     * Returns the number of cells covered by the bounding box of a segment, which is the number of cells a query looks at.
+     * @param fromLongitude Longitude of the start of the segment.
+     * @param fromLatitude  Latitude of the start of the segment.
+     * @param toLongitude   Longitude of the end of the segment.
+     * @param toLatitude    Latitude of the end of the segment.
+     * @return  Number of cells the segment's bounding box covers.
+     */
+    public long cellsCovered(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        long width = cell(Math.max(fromLongitude, toLongitude) + padding) - cell(Math.min(fromLongitude, toLongitude) - padding) + 1;
+        long height = cell(Math.max(fromLatitude, toLatitude) + padding) - cell(Math.min(fromLatitude, toLatitude) - padding) + 1;
+        return width * height;
+    }
+
+    /**
+     * Checks if a segment intersects any edge in the cells covered by its bounding box.
+     * @param fromLongitude Longitude of the start of the segment.
+     * @param fromLatitude  Latitude of the start of the segment.
+     * @param toLongitude   Longitude of the end of the segment.
+     * @param toLatitude    Latitude of the end of the segment.
+     * @return  A boolean for whether the segment intersects an edge.
+     */
+    public boolean intersects(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        long maxX = cell(Math.max(fromLongitude, toLongitude) + padding);
+        long minY = cell(Math.min(fromLatitude, toLatitude) - padding);
+        long maxY = cell(Math.max(fromLatitude, toLatitude) + padding);
+        int tests = 0;
+        boolean found = false;
+        search:
+        for (long x = cell(Math.min(fromLongitude, toLongitude) - padding); x <= maxX; x++){
+            for (long y = minY; y <= maxY; y++){
+                int bucket = bucketOf(cellKey(x, y), false);
+                if (bucket < 0){
+                    continue;
+                }
+                for (int i = bucketStarts[bucket]; i < bucketStarts[bucket + 1]; i++){
+                    int e = cellEdges[i];
+                    tests++;
+                    if (NoFlyZone.linesIntersect(edges[4 * e], edges[4 * e + 1], edges[4 * e + 2], edges[4 * e + 3],
+                            fromLongitude, fromLatitude, toLongitude, toLatitude)){
+                        found = true;
+                        break search;
+                    }
+                }
+            }
+        }
+        if (Metrics.isEnabled()){
+            Metrics.EDGE_TESTS.add(tests);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of edge tests a query for a segment performs if it does not find an intersection, a measure of query cost.
+     * @param fromLongitude Longitude of the start of the segment.
+     * @param fromLatitude  Latitude of the start of the segment.
+     * @param toLongitude   Longitude of the end of the segment.
+     * @param toLatitude    Latitude of the end of the segment.
+     * @return  Number of candidate edges in the cells covered by the segment.
+     */
+    public int candidateCount(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        int count = 0;
+        long maxX = cell(Math.max(fromLongitude, toLongitude) + padding);
+        long minY = cell(Math.min(fromLatitude, toLatitude) - padding);
+        long maxY = cell(Math.max(fromLatitude, toLatitude) + padding);
+        for (long x = cell(Math.min(fromLongitude, toLongitude) - padding); x <= maxX; x++){
+            for (long y = minY; y <= maxY; y++){
+                int bucket = bucketOf(cellKey(x, y), false);
+                if (bucket >= 0){
+                    count += bucketStarts[bucket + 1] - bucketStarts[bucket];
+                }
+            }
+        }
+        return count;
+    }
+
+    private long cell(double coordinate){
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    private static long cellKey(long x, long y){
+        return (x << 32) | (y & 0xffffffffL);
+    }
+
+    private static int hash(long key){
+        // murmur3 finaliser, so neighbouring cells are spread across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int bucketOf(long key, boolean create){
+        int slot = hash(key) & (keys.length - 1);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                return buckets[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (!create){
+            return -1;
+        }
+        if (2 * (bucketCount + 1) > keys.length){
+            resize();
+            return bucketOf(key, true);
+        }
+        keys[slot] = key;
+        buckets[slot] = bucketCount;
+        return bucketCount++;
+    }
+
+    private void resize(){
+        long[] oldKeys = keys;
+        int[] oldBuckets = buckets;
+        keys = new long[oldKeys.length * 2];
+        buckets = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != EMPTY){
+                int slot = hash(oldKeys[i]) & (keys.length - 1);
+                while (keys[slot] != EMPTY){
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[i];
+                buckets[slot] = oldBuckets[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package uk.ac.ed.inf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Plans a day of deliveries for a fleet of drones, each starting from Appleton Tower with its own move limit. The path
+ * to each restaurant is planned once and shared, the valid orders are shared out between the drones, and then the
+ * flightpath of each drone is built in parallel.
+ */
+public class FleetPlanner {
+    /** Maximum number of moves each drone can make in a day. */
+    public static final int MOVE_LIMIT = 2000;
+
+    /**
+     * Outcome of planning one day of orders for a fleet: the delivery status of each order and the flightpath of each drone.
+     * @param deliveries    The delivery information for each of the orders.
+     * @param flightpaths   The flightpath of each drone.
+     */
+    public record FleetPlan(Delivery[] deliveries, List<List<DroneMove>> flightpaths) {}
+
+    /**
+     * Plans the flightpaths of a fleet of drones for one day of orders. Without an objective each order is given to the
+     * first drone with enough moves left, nearest orders first, otherwise each drone in turn takes the orders an
+     * OrderScheduler chooses from those not yet given to a drone.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param drones    Number of drones in the fleet.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and the flightpath of each drone.
+     */
+    public static FleetPlan planDay(Order[] orders, Restaurant[] restaurants, PathPlanner planner, int drones, OrderScheduler.Objective objective){
+        return planDay(orders, MenuIndex.of(restaurants), planner, drones, objective);
+    }
+
+    /**
+     * Plans one day of orders for a fleet of drones, validating them with a menu index which has already been built.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param drones    Number of drones in the fleet.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and the flightpath of each drone.
+     */
+    public static FleetPlan planDay(Order[] orders, MenuIndex index, PathPlanner planner, int drones, OrderScheduler.Objective objective){
+        Metrics.ValidationEvent validation = new Metrics.ValidationEvent(orders.length);
+        MenuIndex.Validation[] validations = index.checkAll(orders);
+        validation.finish();
+        return planDay(orders, validations, planner, drones, objective);
+    }
+
+    /**
+     * Plans one day of orders for a fleet of drones from orders which have already been validated.
+     * @param orders    All the orders made on the day, which must not be empty.
+     * @param validations   The outcome of validating each order, see MenuIndex.checkAll.
+     * @param planner   The planner used to find the paths to the restaurants.
+     * @param drones    Number of drones in the fleet.
+     * @param objective The objective to maximise, or null to deliver the orders nearest their restaurant first.
+     * @return  The deliveries and the flightpath of each drone.
+     */
+    public static FleetPlan planDay(Order[] orders, MenuIndex.Validation[] validations, PathPlanner planner, int drones, OrderScheduler.Objective objective){
+        Delivery[] deliveries = Delivery.getDeliveries(orders, validations);
+        DeliveryBook book = new DeliveryBook(deliveries);
+        int[] sorted = Order.sortedIndices(validations, App.DRONE_START);
+        ArrayList<Order> sortedOrders = new ArrayList<>(sorted.length);
+        long startTicks = System.currentTimeMillis();
+        // the restaurant and goal of each valid order, null for invalid orders
+        Restaurant[] restaurants = new Restaurant[sorted.length];
+        LngLat[] goals = new LngLat[sorted.length];
+        List<LngLat> validGoals = new ArrayList<>();
+        for (int i = 0; i < goals.length; i++) {
+            sortedOrders.add(orders[sorted[i]]);
+            MenuIndex.Validation checked = validations[sorted[i]];
+            if (checked.outcome().equals("Valid")) {
+                restaurants[i] = checked.restaurant();
+                goals[i] = new LngLat(restaurants[i].longitude(), restaurants[i].latitude());
+                validGoals.add(goals[i]);
+            }
+        }
+        PathPlanner paths = new PrecomputedPathPlanner(planner, App.DRONE_START, validGoals, ForkJoinPool.commonPool());
+        int[] costs = new int[goals.length];
+        for (int i = 0; i < goals.length; i++) {
+            float[] moves = goals[i] == null ? null : paths.planMoves(App.DRONE_START, goals[i]);
+            // there and back, hovering at each end
+            costs[i] = moves == null ? -1 : 2 * moves.length + 2;
+        }
+        int[] assigned = objective == null ? assignFirstFit(costs, drones) : assignScheduled(sortedOrders, costs, drones, objective);
+        // build each drone's flightpath from its orders, nearest first
+        List<List<DroneMove>> flightpaths = IntStream.range(0, drones).parallel().mapToObj(drone -> {
+            FlightPathBuffer flightpath = new FlightPathBuffer(MOVE_LIMIT);
+            for (int i = 0; i < assigned.length; i++) {
+                if (assigned[i] == drone) {
+                    Order order = sortedOrders.get(i);
+                    Metrics.OrderPlanEvent event = new Metrics.OrderPlanEvent(order.orderNo());
+                    int orderStart = flightpath.size();
+                    boolean found = App.appendFullOrderPath(flightpath, App.DRONE_START, order, restaurants[i], paths, startTicks);
+                    event.finish(found, flightpath.size() - orderStart);
+                    if (!found) {
+                        // the route could not be rebuilt, so take any moves back off and leave the order undelivered;
+                        // each order is only ever given to one drone, so no other thread writes this element
+                        flightpath.truncate(orderStart);
+                        assigned[i] = -1;
+                    }
+                }
+            }
+            return flightpath.asList();
+        }).collect(Collectors.toList());
+        for (int i = 0; i < assigned.length; i++) {
+            if (assigned[i] >= 0) {
+                book.setDelivered(sortedOrders.get(i));
+            } else if (goals[i] != null) {
+                book.setValidNotDelivered(sortedOrders.get(i));
+            }
+        }
+        return new FleetPlan(deliveries, flightpaths);
+    }
+
+    /**
+     * Gives each order to the first drone with enough moves left for it.
+     * @return  The drone each order is given to, or -1 if it is not delivered.
+     */
+    private static int[] assignFirstFit(int[] costs, int drones){
+        int[] assigned = new int[costs.length];
+        int[] movesLeft = new int[drones];
+        Arrays.fill(movesLeft, MOVE_LIMIT);
+        for (int i = 0; i < costs.length; i++) {
+            assigned[i] = -1;
+            for (int drone = 0; drone < drones && costs[i] >= 0; drone++) {
+                if (costs[i] <= movesLeft[drone]) {
+                    movesLeft[drone] -= costs[i];
+                    assigned[i] = drone;
+                    break;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Lets each drone in turn take the orders the scheduler chooses from those not yet given to a drone.
+     * @return  The drone each order is given to, or -1 if it is not delivered.
+     */
+    private static int[] assignScheduled(List<Order> orders, int[] costs, int drones, OrderScheduler.Objective objective){
+        int[] assigned = new int[costs.length];
+        Arrays.fill(assigned, -1);
+        int[] remaining = costs.clone();
+        OrderScheduler scheduler = new OrderScheduler(objective, MOVE_LIMIT);
+        for (int drone = 0; drone < drones; drone++) {
+            boolean[] selected = scheduler.select(orders, remaining);
+            for (int i = 0; i < selected.length; i++) {
+                if (selected[i]) {
+                    assigned[i] = drone;
+                    remaining[i] = -1;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Writes the combined 'resultfiles/deliveries-date.json' file, and a flightpath and drone file for each drone
+     * numbered from 1, named like 'resultfiles/flightpath-date-drone1.json'.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param plan  The plan of the fleet.
+     */
+    public static void writeFiles(String date, FleetPlan plan){
+        writeFiles(date, plan, new RunOptions(new String[0], 0));
+    }
+
+    /**
+     * Writes the combined deliveries file and the flightpath and drone file of each drone at the same time.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param plan  The plan of the fleet.
+     * @param options   The command-line flags, --gzip to compress the files and --binary to also write the binary flightpaths.
+     */
+    public static void writeFiles(String date, FleetPlan plan, RunOptions options){
+        try {
+            ResultWriter.writeDay(date, plan.deliveries(), plan.flightpaths(), options.has("gzip"), options.has("binary"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
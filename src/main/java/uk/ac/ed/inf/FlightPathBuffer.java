@@ -0,0 +1,285 @@
+package uk.ac.ed.inf;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A flightpath stored as growable arrays of primitives, one array per field, instead of one DroneMove object per move.
+ * The order number of each move is an index into a small list of the order numbers seen, and its angle is the index
+ * of its compass direction, so adding a move allocates nothing once the arrays are big enough. DroneMove objects are
+ * only made when a move is read through asList, such as when the flightpath is written.
+ */
+public class FlightPathBuffer {
+    // direction of a hover move
+    private static final byte HOVER = -1;
+
+    private final List<String> orderNumbers = new ArrayList<>();
+    private final Map<String, Integer> orderIndices = new HashMap<>();
+    // the order number of the last move added, which is usually the same as the next one
+    private String lastOrderNo = null;
+    private int lastOrderIndex = -1;
+
+    private int size = 0;
+    private int[] orders;
+    private byte[] directions;
+    private double[] fromLongitudes;
+    private double[] fromLatitudes;
+    private double[] toLongitudes;
+    private double[] toLatitudes;
+    private long[] ticks;
+
+    /**
+     * Creates an empty flightpath with room for a day's moves.
+     */
+    public FlightPathBuffer(){
+        this(256);
+    }
+
+    /**
+     * Creates an empty flightpath.
+     * @param capacity  Number of moves there is room for before the arrays have to grow.
+     */
+    public FlightPathBuffer(int capacity){
+        capacity = Math.max(capacity, 1);
+        orders = new int[capacity];
+        directions = new byte[capacity];
+        fromLongitudes = new double[capacity];
+        fromLatitudes = new double[capacity];
+        toLongitudes = new double[capacity];
+        toLatitudes = new double[capacity];
+        ticks = new long[capacity];
+    }
+
+    /**
+     * Returns the number of moves.
+     * @return  The number of moves in the flightpath.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Adds a move in one of the compass directions, working out where it finishes.
+     * @param orderNo   Number of the order being delivered.
+     * @param longitude Longitude of the drone before the move.
+     * @param latitude  Latitude of the drone before the move.
+     * @param direction Direction of the move.
+     * @param ticksSinceStartOfCalculation  Number of milliseconds elapsed since the first drone move was calculated.
+     */
+    public void addMove(String orderNo, double longitude, double latitude, CompassDirection direction, long ticksSinceStartOfCalculation){
+        add(orderIndex(orderNo), (byte) direction.ordinal(), longitude, latitude,
+                direction.nextLongitude(longitude), direction.nextLatitude(latitude), ticksSinceStartOfCalculation);
+    }
+
+    /**
+     * Adds a hover move, where the drone stays where it is.
+     * @param orderNo   Number of the order being delivered.
+     * @param longitude Longitude of the drone.
+     * @param latitude  Latitude of the drone.
+     * @param ticksSinceStartOfCalculation  Number of milliseconds elapsed since the first drone move was calculated.
+     */
+    public void addHover(String orderNo, double longitude, double latitude, long ticksSinceStartOfCalculation){
+        add(orderIndex(orderNo), HOVER, longitude, latitude, longitude, latitude, ticksSinceStartOfCalculation);
+    }
+
+    /**
+     * Adds the moves from one index to another in reverse, each flown in the opposite direction from its end back to
+     * its start, so the drone retraces them exactly. Hover moves in the range are skipped.
+     * @param from  Index of the first move of the range.
+     * @param to    Index after the last move of the range.
+     * @param startTicks    The number of ticks the flightpath calculation started at, the ticks of each move being
+     *                      the milliseconds since then at the time it is added.
+     */
+    public void addReversed(int from, int to, long startTicks){
+        if (from < 0 || to > size || from > to){
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + size + " moves");
+        }
+        ensureCapacity(size + to - from);
+        for (int i = to - 1; i >= from; i--){
+            if (directions[i] != HOVER){
+                byte opposite = (byte) ((directions[i] + CompassDirection.COUNT / 2) % CompassDirection.COUNT);
+                add(orders[i], opposite, toLongitudes[i], toLatitudes[i], fromLongitudes[i], fromLatitudes[i],
+                        System.currentTimeMillis() - startTicks);
+            }
+        }
+    }
+
+    /**
+     * Adds all the moves of another flightpath.
+     * @param other The flightpath whose moves are added.
+     */
+    public void addAll(FlightPathBuffer other){
+        ensureCapacity(size + other.size);
+        // the other flightpath numbers its orders differently
+        int[] remap = new int[other.orderNumbers.size()];
+        for (int i = 0; i < remap.length; i++){
+            remap[i] = orderIndex(other.orderNumbers.get(i));
+        }
+        for (int i = 0; i < other.size; i++){
+            orders[size + i] = remap[other.orders[i]];
+        }
+        System.arraycopy(other.directions, 0, directions, size, other.size);
+        System.arraycopy(other.fromLongitudes, 0, fromLongitudes, size, other.size);
+        System.arraycopy(other.fromLatitudes, 0, fromLatitudes, size, other.size);
+        System.arraycopy(other.toLongitudes, 0, toLongitudes, size, other.size);
+        System.arraycopy(other.toLatitudes, 0, toLatitudes, size, other.size);
+        System.arraycopy(other.ticks, 0, ticks, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Removes the moves after a given number of moves, such as those of an order that turned out to be too long.
+     * @param newSize   Number of moves to keep.
+     */
+    public void truncate(int newSize){
+        if (newSize < 0 || newSize > size){
+            throw new IndexOutOfBoundsException("Size " + newSize + " of " + size + " moves");
+        }
+        size = newSize;
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Order number of the order being delivered.
+     */
+    public String getOrderNo(int i){
+        return orderNumbers.get(orders[checkIndex(i)]);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Direction of the move, or null when hovering.
+     */
+    public CompassDirection getDirection(int i){
+        byte direction = directions[checkIndex(i)];
+        return direction == HOVER ? null : CompassDirection.get(direction);
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Angle the drone moved in, as written in the flightpath file, or "null" when hovering.
+     */
+    public String getAngle(int i){
+        CompassDirection direction = getDirection(i);
+        return direction == null ? "null" : direction.getAngleString();
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Longitude of the drone before the move.
+     */
+    public double getFromLongitude(int i){
+        return fromLongitudes[checkIndex(i)];
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Latitude of the drone before the move.
+     */
+    public double getFromLatitude(int i){
+        return fromLatitudes[checkIndex(i)];
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Longitude of the drone after the move.
+     */
+    public double getToLongitude(int i){
+        return toLongitudes[checkIndex(i)];
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Latitude of the drone after the move.
+     */
+    public double getToLatitude(int i){
+        return toLatitudes[checkIndex(i)];
+    }
+
+    /**
+     * @param i Index of the move.
+     * @return  Number of milliseconds elapsed since the drone's flightpath started being calculated.
+     */
+    public long getTicksSinceStartOfCalculation(int i){
+        return ticks[checkIndex(i)];
+    }
+
+    /**
+     * Returns a move as a DroneMove object.
+     * @param i Index of the move.
+     * @return  The move.
+     */
+    public DroneMove getMove(int i){
+        return new DroneMove(getOrderNo(i), fromLongitudes[i], fromLatitudes[i], getAngle(i), toLongitudes[i],
+                toLatitudes[i], ticks[i]);
+    }
+
+    /**
+     * Returns the moves as a list, each made into a DroneMove object only when it is asked for. The list reads the
+     * flightpath as it is, so it should not be used while moves are still being added.
+     * @return  A read-only list of the moves.
+     */
+    public List<DroneMove> asList(){
+        return new MoveList();
+    }
+
+    private class MoveList extends AbstractList<DroneMove> implements RandomAccess {
+        @Override
+        public DroneMove get(int index) {
+            return getMove(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private void add(int order, byte direction, double fromLongitude, double fromLatitude, double toLongitude, double toLatitude, long tick){
+        ensureCapacity(size + 1);
+        orders[size] = order;
+        directions[size] = direction;
+        fromLongitudes[size] = fromLongitude;
+        fromLatitudes[size] = fromLatitude;
+        toLongitudes[size] = toLongitude;
+        toLatitudes[size] = toLatitude;
+        ticks[size] = tick;
+        size++;
+    }
+
+    private int orderIndex(String orderNo){
+        if (!orderNo.equals(lastOrderNo)){
+            lastOrderIndex = orderIndices.computeIfAbsent(orderNo, o -> {
+                orderNumbers.add(o);
+                return orderNumbers.size() - 1;
+            });
+            lastOrderNo = orderNo;
+        }
+        return lastOrderIndex;
+    }
+
+    private void ensureCapacity(int capacity){
+        if (capacity > orders.length){
+            int newCapacity = Math.max(capacity, orders.length * 2);
+            orders = Arrays.copyOf(orders, newCapacity);
+            directions = Arrays.copyOf(directions, newCapacity);
+            fromLongitudes = Arrays.copyOf(fromLongitudes, newCapacity);
+            fromLatitudes = Arrays.copyOf(fromLatitudes, newCapacity);
+            toLongitudes = Arrays.copyOf(toLongitudes, newCapacity);
+            toLatitudes = Arrays.copyOf(toLatitudes, newCapacity);
+            ticks = Arrays.copyOf(ticks, newCapacity);
+        }
+    }
+
+    private int checkIndex(int i){
+        if (i < 0 || i >= size){
+            throw new IndexOutOfBoundsException("Move " + i + " of " + size);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,190 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Path planner which follows a precomputed DistanceField for each restaurant, so planning a path to a restaurant
+ * needs no search. The fields cover the central area and the restaurants plus a margin, and can be rebuilt in the
+ * background while the existing ones keep being used. Goals without a field, or paths the fields can't complete, are
+ * planned by a fallback planner instead.
+ */
+public class FlowFieldPlanner implements PathPlanner {
+    /** Distance in degrees the fields extend past the central area and the restaurants. */
+    public static final double MARGIN = 0.003;
+
+    private final NoFlyZoneSet noFlyZones;
+    private final CentralArea centralArea;
+    private final PathPlanner fallback;
+    private volatile Map<LngLat, DistanceField> fields = new HashMap<>();
+
+    /**
+     * Creates a flow field planner and builds the fields for each restaurant.
+     * @param restaurants   The restaurants to build fields for.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     */
+    public FlowFieldPlanner(Restaurant[] restaurants, MultiPolygon noFlyZone, URL centralURL){
+        this(restaurants, NoFlyZoneSet.of(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates a flow field planner from No-Fly zones which have already been compiled and builds the fields for each
+     * restaurant.
+     * @param restaurants   The restaurants to build fields for.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     */
+    public FlowFieldPlanner(Restaurant[] restaurants, NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        this.noFlyZones = noFlyZones;
+        this.centralArea = centralArea;
+        this.fallback = new AStarPathPlanner(noFlyZones, centralArea);
+        rebuild(restaurants);
+    }
+
+    /**
+     * Builds the fields for a new set of restaurants, replacing the current fields once they are all built.
+     * @param restaurants   The restaurants to build fields for.
+     */
+    public void rebuild(Restaurant[] restaurants){
+        double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        List<LngLat> points = new ArrayList<>(List.of(centralArea.getPoints()));
+        for (Restaurant restaurant : restaurants){
+            points.add(new LngLat(restaurant.longitude(), restaurant.latitude()));
+        }
+        for (LngLat point : points){
+            minLng = Math.min(minLng, point.longitude());
+            minLat = Math.min(minLat, point.latitude());
+            maxLng = Math.max(maxLng, point.longitude());
+            maxLat = Math.max(maxLat, point.latitude());
+        }
+        Map<LngLat, DistanceField> built = new HashMap<>();
+        for (Restaurant restaurant : restaurants){
+            LngLat goal = new LngLat(restaurant.longitude(), restaurant.latitude());
+            built.put(goal, DistanceField.build(goal, minLng - MARGIN, minLat - MARGIN, maxLng + MARGIN, maxLat + MARGIN, noFlyZones, centralArea));
+        }
+        fields = built;
+    }
+
+    /**
+     * Rebuilds the fields on another thread, while paths keep being planned with the current fields.
+     * @param restaurants   The restaurants to build fields for.
+     * @param executor  The executor the fields are built on.
+     * @return  A future that completes once the new fields are in use.
+     */
+    public CompletableFuture<Void> rebuildInBackground(Restaurant[] restaurants, Executor executor){
+        return CompletableFuture.runAsync(() -> rebuild(restaurants), executor);
+    }
+
+    /**
+     * Follows the field of the goal from the start, or uses the fallback planner if that is not possible.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        DistanceField field = fields.get(goal);
+        float[] moves = field == null ? null : followField(field, start, goal);
+        return moves != null ? moves : fallback.planMoves(start, goal);
+    }
+
+    /**
+     * Moves the drone downhill through the field, checking each move is legal from the drone's actual position, as
+     * that can drift from the centres of the cells the field was built from.
+     * @return  The angles of the moves, or null if the field leads nowhere from the drone's actual positions.
+     */
+    private float[] followField(DistanceField field, LngLat start, LngLat goal){
+        List<Float> moves = new ArrayList<>();
+        PositionIndex explored = new PositionIndex();
+        double longitude = start.longitude();
+        double latitude = start.latitude();
+        while (!goal.closeTo(longitude, latitude)){
+            int cell = field.cellAt(longitude, latitude);
+            if (cell < 0 || field.movesFrom(cell) == DistanceField.UNREACHABLE || moves.size() == AStarPathPlanner.MAX_MOVES){
+                return null;
+            }
+            boolean inCentral = centralArea.contains(longitude, latitude);
+            // the stored direction keeps the drone on the path the field was built along, as long as it still descends
+            CompassDirection best = field.movesFrom(cell) > 0 ? field.directionFrom(cell) : null;
+            if (best != null && !isDescent(field, cell, best, longitude, latitude, inCentral, explored)){
+                best = null;
+            }
+            if (best == null){
+                best = bestNeighbour(field, goal, longitude, latitude, inCentral, explored);
+            }
+            if (best == null){
+                return null;
+            }
+            explored.add(longitude, latitude);
+            moves.add(best.getAngle());
+            longitude = best.nextLongitude(longitude);
+            latitude = best.nextLatitude(latitude);
+        }
+        float[] angles = new float[moves.size()];
+        for (int i = 0; i < angles.length; i++){
+            angles[i] = moves.get(i);
+        }
+        return angles;
+    }
+
+    /**
+     * Returns whether a move is legal and lands in a cell closer to the goal than the current one.
+     */
+    private boolean isDescent(DistanceField field, int cell, CompassDirection direction, double longitude, double latitude,
+                              boolean inCentral, PositionIndex explored){
+        double nextLongitude = direction.nextLongitude(longitude);
+        double nextLatitude = direction.nextLatitude(latitude);
+        int next = field.cellAt(nextLongitude, nextLatitude);
+        return next >= 0 && field.movesFrom(next) != DistanceField.UNREACHABLE && field.movesFrom(next) < field.movesFrom(cell)
+                && isLegal(longitude, latitude, nextLongitude, nextLatitude, inCentral, explored);
+    }
+
+    /**
+     * Finds the legal move landing in the cell fewest moves from the goal, breaking ties by distance to the goal.
+     * @return  The direction of the move, or null if no move is legal.
+     */
+    private CompassDirection bestNeighbour(DistanceField field, LngLat goal, double longitude, double latitude,
+                                           boolean inCentral, PositionIndex explored){
+        CompassDirection best = null;
+        int bestMoves = Integer.MAX_VALUE;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < CompassDirection.COUNT; i++){
+            CompassDirection direction = CompassDirection.get(i);
+            double nextLongitude = direction.nextLongitude(longitude);
+            double nextLatitude = direction.nextLatitude(latitude);
+            int next = field.cellAt(nextLongitude, nextLatitude);
+            if (next < 0 || field.movesFrom(next) == DistanceField.UNREACHABLE){
+                continue;
+            }
+            int nextMoves = field.movesFrom(next);
+            double distance = goal.distanceTo(nextLongitude, nextLatitude);
+            // legality is only checked for moves that would beat the best so far
+            if (nextMoves > bestMoves || (nextMoves == bestMoves && distance >= bestDistance)){
+                continue;
+            }
+            if (!isLegal(longitude, latitude, nextLongitude, nextLatitude, inCentral, explored)){
+                continue;
+            }
+            best = direction;
+            bestMoves = nextMoves;
+            bestDistance = distance;
+        }
+        return best;
+    }
+
+    private boolean isLegal(double longitude, double latitude, double nextLongitude, double nextLatitude, boolean inCentral,
+                            PositionIndex explored){
+        return !explored.containsCloseTo(nextLongitude, nextLatitude)
+                && (inCentral || !centralArea.contains(nextLongitude, nextLatitude))
+                && !noFlyZones.intersects(longitude, latitude, nextLongitude, nextLatitude);
+    }
+}
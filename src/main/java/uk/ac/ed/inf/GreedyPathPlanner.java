@@ -0,0 +1,65 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path planner which repeatedly takes the legal unexplored move that gets the drone closest to the goal, see App.findBestMove.
+ */
+public class GreedyPathPlanner implements PathPlanner {
+    private final NoFlyZoneSet noFlyZones;
+    private final CentralArea centralArea;
+
+    /**
+     * Default constructor for the greedy planner.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     */
+    public GreedyPathPlanner(MultiPolygon noFlyZone, URL centralURL){
+        this(NoFlyZoneSet.of(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Creates a greedy planner from No-Fly zones which have already been compiled, so each move is checked against
+     * them without looking them up again.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     */
+    public GreedyPathPlanner(NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        this.noFlyZones = noFlyZones;
+        this.centralArea = centralArea;
+    }
+
+    /**
+     * Plans the moves of the drone by taking the best move at each step until the goal is reached.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if the drone gets stuck with no legal unexplored moves.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        List<Float> moves = new ArrayList<>();
+        PositionIndex explored = new PositionIndex();
+        LngLat position = start;
+        // find moves until goal is reached
+        while (!position.closeTo(goal)) {
+            float bestMove = App.findBestMove(position, goal, noFlyZones, explored, centralArea);
+            // no legal unexplored move left, the drone is stuck
+            if (bestMove == -1){
+                return null;
+            }
+            moves.add(bestMove);
+            // mark the position of the drone as explored
+            explored.add(position);
+            position = position.nextPosition(bestMove);
+        }
+        float[] angles = new float[moves.size()];
+        for (int i = 0; i < angles.length; i++){
+            angles[i] = moves.get(i);
+        }
+        return angles;
+    }
+}
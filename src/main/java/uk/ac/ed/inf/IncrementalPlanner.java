@@ -0,0 +1,340 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans a day for a single drone as its orders arrive, instead of once from the whole day. Each batch of new orders is
+ * validated on its own, orders already seen are ignored, and only the part of the flightpath the drone has not started
+ * flying is planned again. Every trip is a round trip from Appleton Tower, so the unflown trips are kept nearest
+ * restaurant first like App.planDay and a new order only rebuilds the trips from where it is inserted, from routes
+ * already planned, within the moves left. Once the drone has started a trip it is committed and never changed.
+ * If no moves have been flown, the deliveries and flightpath are the same as App.planDay gives for all the orders.
+ */
+public class IncrementalPlanner {
+    private static final int MAX_MOVES = 2000;
+
+    private final PathPlanner planner;
+    private final MenuIndex index;
+    private final long startTicks = System.currentTimeMillis();
+    // every order seen, in the order they arrived
+    private final List<Delivery> deliveries = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    // valid orders whose trip has not been started, nearest restaurant first
+    private final List<Trip> unflown = new ArrayList<>();
+    // moves of the route from Appleton Tower to each restaurant, planned the first time the restaurant is ordered from
+    private final Map<LngLat, float[]> routes = new HashMap<>();
+    private final FlightPathBuffer flightpath = new FlightPathBuffer(MAX_MOVES);
+    // moves which have been flown or belong to the trip in progress
+    private int committed = 0;
+    private int arrivals = 0;
+
+    /**
+     * A valid order waiting to be flown.
+     */
+    private static class Trip {
+        final Order order;
+        final Delivery delivery;
+        final LngLat goal;
+        final double distance;
+        final int arrival;
+        // index of the trip's first move in the flightpath, or -1 if it doesn't fit in the moves left
+        int start = -1;
+
+        Trip(Order order, Delivery delivery, LngLat goal, int arrival){
+            this.order = order;
+            this.delivery = delivery;
+            this.goal = goal;
+            this.distance = App.DRONE_START.distanceTo(goal);
+            this.arrival = arrival;
+        }
+
+        // nearest restaurant first, then in the order they arrived, like Order.sortOrders
+        boolean before(Trip other){
+            return distance < other.distance || (distance == other.distance && arrival < other.arrival);
+        }
+    }
+
+    /**
+     * Creates a planner for a day with no orders yet.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     */
+    public IncrementalPlanner(Restaurant[] restaurants, PathPlanner planner){
+        this(MenuIndex.of(restaurants), planner);
+    }
+
+    /**
+     * Creates a planner for a day with no orders yet, validating them with a menu index which has already been built.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param planner   The planner used to find the paths to the restaurants.
+     */
+    public IncrementalPlanner(MenuIndex index, PathPlanner planner){
+        this.planner = planner;
+        this.index = index;
+    }
+
+    /**
+     * Adds orders which have arrived, validating and planning those not seen before.
+     * @param orders    The orders, which may include orders already added, such as the whole day fetched again.
+     * @return  The number of new orders.
+     */
+    public synchronized int addOrders(Order[] orders){
+        Metrics.ValidationEvent validation = new Metrics.ValidationEvent(0);
+        List<Trip> added = new ArrayList<>();
+        int fresh = 0;
+        for (Order order : orders){
+            if (!seen.add(order.orderNo())){
+                continue;
+            }
+            fresh++;
+            MenuIndex.Validation checked = index.check(order);
+            Delivery delivery = new Delivery(order.orderNo(), checked.outcome(), order.priceTotalInPence());
+            deliveries.add(delivery);
+            if (checked.outcome().equals("Valid")){
+                added.add(new Trip(order, delivery, new LngLat(checked.restaurant().longitude(), checked.restaurant().latitude()), arrivals));
+            }
+            arrivals++;
+        }
+        validation.finish(orders.length);
+        if (added.isEmpty()){
+            return fresh;
+        }
+        // only the trips from the first one the new orders go before have to be rebuilt
+        int from = unflown.size();
+        for (Trip trip : added){
+            int position = insertionPoint(trip);
+            unflown.add(position, trip);
+            from = Math.min(from, position);
+        }
+        replan(from);
+        return fresh;
+    }
+
+    /**
+     * Adds orders read from a JSON array of orders, one at a time.
+     * @param in    Stream of the JSON array of orders, which is closed once read.
+     * @return  The number of new orders.
+     * @throws IOException  If the orders can't be read.
+     */
+    public int addOrders(InputStream in) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        OrderReader.read(in, orders::add);
+        return addOrders(orders.toArray(new Order[0]));
+    }
+
+    /**
+     * Fetches the orders of a day again and adds any which are new, as the REST server adds orders through the day.
+     * @param source    The source of the orders.
+     * @param date  The date of the orders.
+     * @return  The number of new orders.
+     * @throws IOException  If the orders can't be fetched.
+     */
+    public int poll(RestDataSource source, String date) throws IOException {
+        return addOrders(source.getOrders(date));
+    }
+
+    /**
+     * Records how far the drone has flown. The trip it is flying is committed, so its moves and every move before them
+     * are never planned again, and new orders are only fitted into the moves after it.
+     * @param moves Number of moves of the flightpath the drone has flown.
+     * @return  The number of committed moves.
+     */
+    public synchronized int markFlown(int moves){
+        int flown = Math.min(moves, flightpath.size());
+        // the trips which fit are in the flightpath in the same order as they are waiting
+        int started = 0;
+        for (int i = 0; i < unflown.size(); i++){
+            int start = unflown.get(i).start;
+            if (start >= flown){
+                break;
+            }
+            if (start >= 0){
+                started = i + 1;
+            }
+        }
+        if (started > 0){
+            committed = nextStart(started);
+            // trips before the last one started which didn't fit never will, as the moves before them are all committed
+            unflown.subList(0, started).clear();
+        }
+        return committed;
+    }
+
+    /**
+     * Returns the deliveries of every order seen, in the order they arrived, with their current outcome.
+     * @return  Array of Delivery objects, which later orders don't change.
+     */
+    public synchronized Delivery[] getDeliveries(){
+        Delivery[] copies = new Delivery[deliveries.size()];
+        for (int i = 0; i < copies.length; i++){
+            Delivery delivery = deliveries.get(i);
+            copies[i] = new Delivery(delivery.getOrderNo(), delivery.getOutcome(), delivery.getCostInPence());
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the flightpath planned so far, including the moves which have not been flown.
+     * @return  The flightpath.
+     */
+    public synchronized List<DroneMove> getFlightpath(){
+        return new ArrayList<>(flightpath.asList());
+    }
+
+    /**
+     * Returns the number of moves which have been flown or belong to the trip in progress.
+     * @return  The number of committed moves.
+     */
+    public synchronized int getCommittedMoves(){
+        return committed;
+    }
+
+    /**
+     * Writes the day's files with the current deliveries and flightpath, replacing the previous ones.
+     * @param date  The date of the orders.
+     * @param options   The command-line flags, for --gzip and --binary.
+     * @throws IOException  If the files can't be written.
+     */
+    public void write(String date, RunOptions options) throws IOException {
+        Delivery[] current;
+        List<DroneMove> moves;
+        // taken together, so the files agree with each other
+        synchronized (this){
+            current = getDeliveries();
+            moves = getFlightpath();
+        }
+        ResultWriter.writeDay(date, current, List.of(moves), options.has("gzip"), options.has("binary"));
+    }
+
+    /**
+     * Plans the unflown trips again from one of them on, in order, skipping any which don't fit in the moves left. The
+     * trips before it keep their moves, as the moves they had to fit into haven't changed.
+     */
+    private void replan(int from){
+        flightpath.truncate(nextStart(from));
+        for (int i = from; i < unflown.size(); i++){
+            Trip trip = unflown.get(i);
+            float[] route = route(trip);
+            trip.start = -1;
+            // there and back, hovering at each end
+            if (route != null && flightpath.size() + 2 * route.length + 2 <= MAX_MOVES){
+                trip.start = flightpath.size();
+                appendTrip(trip, route);
+                trip.delivery.setOutcome(OrderOutcome.Delivered);
+            } else {
+                trip.delivery.setOutcome(OrderOutcome.ValidButNotDelivered);
+            }
+        }
+    }
+
+    /**
+     * Returns where the moves of the trips from an index on start: the end of the last trip before it which fits.
+     */
+    private int nextStart(int tripIndex){
+        for (int i = tripIndex - 1; i >= 0; i--){
+            Trip trip = unflown.get(i);
+            if (trip.start >= 0){
+                return trip.start + 2 * routes.get(trip.goal).length + 2;
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Returns the route to a trip's restaurant, planning it if no order has gone there before.
+     */
+    private float[] route(Trip trip){
+        if (routes.containsKey(trip.goal)){
+            return routes.get(trip.goal);
+        }
+        Metrics.OrderPlanEvent event = new Metrics.OrderPlanEvent(trip.order.orderNo());
+        float[] route = planner.planMoves(App.DRONE_START, trip.goal);
+        event.finish(route != null, route == null ? 0 : 2 * route.length + 2);
+        routes.put(trip.goal, route);
+        return route;
+    }
+
+    /**
+     * Adds the moves of a trip in the same way as App.appendFullOrderPath, from a route already planned.
+     */
+    private void appendTrip(Trip trip, float[] route){
+        String orderNo = trip.order.orderNo();
+        int start = flightpath.size();
+        double longitude = App.DRONE_START.longitude();
+        double latitude = App.DRONE_START.latitude();
+        for (float move : route){
+            CompassDirection direction = CompassDirection.fromAngle(move);
+            flightpath.addMove(orderNo, longitude, latitude, direction, System.currentTimeMillis() - startTicks);
+            longitude = direction.nextLongitude(longitude);
+            latitude = direction.nextLatitude(latitude);
+        }
+        flightpath.addHover(orderNo, longitude, latitude, System.currentTimeMillis() - startTicks);
+        flightpath.addReversed(start, flightpath.size() - 1, startTicks);
+        int last = flightpath.size() - 1;
+        flightpath.addHover(orderNo, flightpath.getToLongitude(last), flightpath.getToLatitude(last), System.currentTimeMillis() - startTicks);
+    }
+
+    private int insertionPoint(Trip trip){
+        int low = 0;
+        int high = unflown.size();
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if (unflown.get(middle).before(trip)){
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Plans a day as its orders arrive, fetching the day's orders from the REST server every so often and writing the
+     * day's files again whenever there are new ones.
+     * @param args  The date, the base URL, then optionally --poll=seconds between fetches (60 by default), --polls=n to
+     *              stop after that many fetches, and the flags of App for choosing the planner and writing the files.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Invalid arguments, please input date and then url");
+            return;
+        }
+        String date = args[0];
+        String baseUrlStr = args[1].endsWith("/") ? args[1] : args[1] + "/";
+        RunOptions options = new RunOptions(args, 2);
+        Metrics.setEnabled(options.has("metrics"));
+        long pollMillis = 1000L * options.getInt("poll", 60);
+        int polls = options.getInt("polls", Integer.MAX_VALUE);
+        try {
+            RestDataSource source = App.dataSource(baseUrlStr, options);
+            Restaurant[] restaurants = source.getRestaurants();
+            MultiPolygon noFlyZone = source.getNoFlyZones();
+            IncrementalPlanner planner = new IncrementalPlanner(restaurants, App.makeCachedPlanner(options, restaurants, new NoFlyZoneSet(noFlyZone), source.getCentralArea()));
+            for (int poll = 0; poll < polls; poll++) {
+                if (poll > 0) {
+                    Thread.sleep(pollMillis);
+                }
+                long start = System.nanoTime();
+                int added = planner.poll(source, date);
+                if (added > 0) {
+                    planner.write(date, options);
+                    System.out.println(added + " new orders, re-planned and written in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }
+            }
+            Metrics.writeSummary(options);
+        } catch (IOException e) {
+            System.err.println("I/O Exception, please check connection and input data");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
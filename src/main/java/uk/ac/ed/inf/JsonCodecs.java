@@ -0,0 +1,609 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written JSON codecs for the types the program reads from the REST server and writes to its result files, on
+ * Jackson's streaming parser and generator. Unlike an ObjectMapper they need no reflection, so nothing is introspected
+ * at startup, and every reader and writer shares the one JsonFactory here. The JSON is the same as an ObjectMapper
+ * reads and writes, except that unknown fields are skipped instead of failing. Known fields must hold the type they
+ * are read as, so a wrong or nested value fails instead of being read as 0 or null.
+ */
+public class JsonCodecs {
+    /** The factory every parser and generator is created from. */
+    public static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Reads and writes one type.
+     * @param <T>   The type.
+     */
+    public interface Codec<T> {
+        /**
+         * Reads a value, with the parser on its first token, leaving the parser on its last token.
+         * @param parser    The parser.
+         * @return  The value, or null for a JSON null.
+         * @throws IOException  If the JSON is not a value of the type.
+         */
+        T read(JsonParser parser) throws IOException;
+
+        /**
+         * Writes a value.
+         * @param generator The generator.
+         * @param value The value.
+         * @throws IOException  If writing fails.
+         */
+        void write(JsonGenerator generator, T value) throws IOException;
+    }
+
+    /** Items on a restaurant's menu. */
+    public static final Codec<Item> ITEM = new Codec<>() {
+        @Override
+        public Item read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "an item")){
+                return null;
+            }
+            String name = null;
+            int priceInPence = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name":
+                        name = readString(parser);
+                        break;
+                    case "priceInPence":
+                        priceInPence = readInt(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new Item(name, priceInPence);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Item item) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", item.name());
+            generator.writeNumberField("priceInPence", item.priceInPence());
+            generator.writeEndObject();
+        }
+    };
+
+    /** Restaurants, with their menus. */
+    public static final Codec<Restaurant> RESTAURANT = new Codec<>() {
+        @Override
+        public Restaurant read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "a restaurant")){
+                return null;
+            }
+            String name = null;
+            double longitude = 0;
+            double latitude = 0;
+            Item[] menu = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name":
+                        name = readString(parser);
+                        break;
+                    case "longitude":
+                        longitude = readDouble(parser);
+                        break;
+                    case "latitude":
+                        latitude = readDouble(parser);
+                        break;
+                    case "menu":
+                        menu = readArray(parser, ITEM, Item.class);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new Restaurant(name, longitude, latitude, menu);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Restaurant restaurant) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", restaurant.name());
+            generator.writeNumberField("longitude", restaurant.longitude());
+            generator.writeNumberField("latitude", restaurant.latitude());
+            generator.writeFieldName("menu");
+            writeArray(generator, restaurant.menu(), ITEM);
+            generator.writeEndObject();
+        }
+    };
+
+    /** Points, such as the corners of the central area. */
+    public static final Codec<LngLat> LNG_LAT = new Codec<>() {
+        @Override
+        public LngLat read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "a point")){
+                return null;
+            }
+            double longitude = 0;
+            double latitude = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "longitude":
+                        longitude = readDouble(parser);
+                        break;
+                    case "latitude":
+                        latitude = readDouble(parser);
+                        break;
+                    default:
+                        // such as the names of the central area's corners
+                        parser.skipChildren();
+                }
+            }
+            return new LngLat(longitude, latitude);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, LngLat point) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("longitude", point.longitude());
+            generator.writeNumberField("latitude", point.latitude());
+            generator.writeEndObject();
+        }
+    };
+
+    /** No-Fly zones, each a ring of [longitude, latitude] pairs. */
+    public static final Codec<NoFlyZone> NO_FLY_ZONE = new Codec<>() {
+        @Override
+        public NoFlyZone read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "a No-Fly zone")){
+                return null;
+            }
+            String name = null;
+            double[][] coordinates = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name":
+                        name = readString(parser);
+                        break;
+                    case "coordinates":
+                        coordinates = readArray(parser, COORDINATE, double[].class);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new NoFlyZone(name, coordinates);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, NoFlyZone zone) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", zone.name());
+            generator.writeFieldName("coordinates");
+            writeArray(generator, zone.coordinates(), COORDINATE);
+            generator.writeEndObject();
+        }
+    };
+
+    /** Orders, as the REST server sends them. */
+    public static final Codec<Order> ORDER = new Codec<>() {
+        @Override
+        public Order read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "an order")){
+                return null;
+            }
+            String orderNo = null;
+            String orderDate = null;
+            String customer = null;
+            String creditCardNumber = null;
+            String creditCardExpiry = null;
+            String cvv = null;
+            int priceTotalInPence = 0;
+            String[] orderItems = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "orderNo":
+                        orderNo = readString(parser);
+                        break;
+                    case "orderDate":
+                        orderDate = readString(parser);
+                        break;
+                    case "customer":
+                        customer = readString(parser);
+                        break;
+                    case "creditCardNumber":
+                        creditCardNumber = readString(parser);
+                        break;
+                    case "creditCardExpiry":
+                        creditCardExpiry = readString(parser);
+                        break;
+                    case "cvv":
+                        cvv = readString(parser);
+                        break;
+                    case "priceTotalInPence":
+                        priceTotalInPence = readInt(parser);
+                        break;
+                    case "orderItems":
+                        orderItems = readArray(parser, STRING, String.class);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new Order(orderNo, orderDate, customer, creditCardNumber, creditCardExpiry, cvv, priceTotalInPence, orderItems);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Order order) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("orderNo", order.orderNo());
+            generator.writeStringField("orderDate", order.orderDate());
+            generator.writeStringField("customer", order.customer());
+            generator.writeStringField("creditCardNumber", order.creditCardNumber());
+            generator.writeStringField("creditCardExpiry", order.creditCardExpiry());
+            generator.writeStringField("cvv", order.cvv());
+            generator.writeNumberField("priceTotalInPence", order.priceTotalInPence());
+            generator.writeFieldName("orderItems");
+            writeArray(generator, order.orderItems(), STRING);
+            generator.writeEndObject();
+        }
+    };
+
+    /** Deliveries, as written to the deliveries file. */
+    public static final Codec<Delivery> DELIVERY = new Codec<>() {
+        @Override
+        public Delivery read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "a delivery")){
+                return null;
+            }
+            String orderNo = null;
+            String outcome = null;
+            int costInPence = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "orderNo":
+                        orderNo = readString(parser);
+                        break;
+                    case "outcome":
+                        outcome = readString(parser);
+                        break;
+                    case "costInPence":
+                        costInPence = readInt(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new Delivery(orderNo, outcome, costInPence);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, Delivery delivery) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("orderNo", delivery.getOrderNo());
+            generator.writeStringField("outcome", delivery.getOutcome());
+            generator.writeNumberField("costInPence", delivery.getCostInPence());
+            generator.writeEndObject();
+        }
+    };
+
+    /** Drone moves, as written to the flightpath file. */
+    public static final Codec<DroneMove> DRONE_MOVE = new Codec<>() {
+        @Override
+        public DroneMove read(JsonParser parser) throws IOException {
+            if (!startObject(parser, "a move")){
+                return null;
+            }
+            String orderNo = null;
+            double fromLongitude = 0;
+            double fromLatitude = 0;
+            String angle = null;
+            double toLongitude = 0;
+            double toLatitude = 0;
+            long ticks = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "orderNo":
+                        orderNo = readString(parser);
+                        break;
+                    case "fromLongitude":
+                        fromLongitude = readDouble(parser);
+                        break;
+                    case "fromLatitude":
+                        fromLatitude = readDouble(parser);
+                        break;
+                    case "angle":
+                        angle = readString(parser);
+                        break;
+                    case "toLongitude":
+                        toLongitude = readDouble(parser);
+                        break;
+                    case "toLatitude":
+                        toLatitude = readDouble(parser);
+                        break;
+                    case "ticksSinceStartOfCalculation":
+                        ticks = readLong(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new DroneMove(orderNo, fromLongitude, fromLatitude, angle, toLongitude, toLatitude, ticks);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, DroneMove move) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("orderNo", move.getOrderNo());
+            generator.writeNumberField("fromLongitude", move.getFromLongitude());
+            generator.writeNumberField("fromLatitude", move.getFromLatitude());
+            generator.writeStringField("angle", move.getAngle());
+            generator.writeNumberField("toLongitude", move.getToLongitude());
+            generator.writeNumberField("toLatitude", move.getToLatitude());
+            generator.writeNumberField("ticksSinceStartOfCalculation", move.getTicksSinceStartOfCalculation());
+            generator.writeEndObject();
+        }
+    };
+
+    private static final Codec<String> STRING = new Codec<>() {
+        @Override
+        public String read(JsonParser parser) throws IOException {
+            return readString(parser);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, String value) throws IOException {
+            generator.writeString(value);
+        }
+    };
+
+    // a [longitude, latitude] pair
+    private static final Codec<double[]> COORDINATE = new Codec<>() {
+        @Override
+        public double[] read(JsonParser parser) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL){
+                return null;
+            }
+            if (parser.currentToken() != JsonToken.START_ARRAY){
+                throw new JsonParseException(parser, "Expected an array of numbers");
+            }
+            double[] values = new double[2];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY){
+                if (size == values.length){
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = readDouble(parser);
+            }
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public void write(JsonGenerator generator, double[] values) throws IOException {
+            generator.writeArray(values, 0, values.length);
+        }
+    };
+
+    // the codec of each type, looked up by the methods taking a class
+    private static final Map<Class<?>, Codec<?>> REGISTRY = Map.of(Item.class, ITEM, Restaurant.class, RESTAURANT,
+            LngLat.class, LNG_LAT, NoFlyZone.class, NO_FLY_ZONE, Order.class, ORDER, Delivery.class, DELIVERY,
+            DroneMove.class, DRONE_MOVE);
+
+    /**
+     * Returns the codec of a type.
+     * @param type  The type.
+     * @param <T>   The type.
+     * @return  Its codec.
+     * @throws IllegalArgumentException If the type has no codec.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> codec(Class<T> type){
+        Codec<T> codec = (Codec<T>) REGISTRY.get(type);
+        if (codec == null){
+            throw new IllegalArgumentException("No JSON codec for " + type.getName());
+        }
+        return codec;
+    }
+
+    /**
+     * Reads a JSON array from a URL, such as a resource of the REST server.
+     * @param url   The URL.
+     * @param type  Type of the elements.
+     * @param <T>   Type of the elements.
+     * @return  The array, or null for a JSON null.
+     * @throws IOException  If the URL can't be read or is not an array of the type.
+     */
+    public static <T> T[] readArray(URL url, Class<T> type) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(url)){
+            return readValue(parser, type);
+        }
+    }
+
+    /**
+     * Reads a JSON array from a stream, which is closed once read.
+     * @param in    The stream.
+     * @param type  Type of the elements.
+     * @param <T>   Type of the elements.
+     * @return  The array, or null for a JSON null.
+     * @throws IOException  If the stream can't be read or is not an array of the type.
+     */
+    public static <T> T[] readArray(InputStream in, Class<T> type) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)){
+            return readValue(parser, type);
+        }
+    }
+
+    /**
+     * Reads a JSON array from a file.
+     * @param file  The file.
+     * @param type  Type of the elements.
+     * @param <T>   Type of the elements.
+     * @return  The array, or null for a JSON null.
+     * @throws IOException  If the file can't be read or is not an array of the type.
+     */
+    public static <T> T[] readArray(Path file, Class<T> type) throws IOException {
+        return readArray(Files.newInputStream(file), type);
+    }
+
+    private static <T> T[] readValue(JsonParser parser, Class<T> type) throws IOException {
+        if (parser.nextToken() == null){
+            throw new JsonParseException(parser, "No content to read");
+        }
+        return readArray(parser, codec(type), type);
+    }
+
+    /**
+     * Reads a JSON array with the parser on its first token, leaving the parser on its last token.
+     * @param parser    The parser.
+     * @param codec The codec of the elements.
+     * @param type  Type of the elements.
+     * @param <T>   Type of the elements.
+     * @return  The array, or null for a JSON null.
+     * @throws IOException  If the JSON is not an array of the type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T[] readArray(JsonParser parser, Codec<T> codec, Class<T> type) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL){
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY){
+            throw new JsonParseException(parser, "Expected an array of " + type.getSimpleName());
+        }
+        List<T> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY){
+            values.add(codec.read(parser));
+        }
+        return values.toArray((T[]) Array.newInstance(type, values.size()));
+    }
+
+    /**
+     * Writes a JSON array, or null.
+     * @param generator The generator.
+     * @param values    The array.
+     * @param codec The codec of the elements.
+     * @param <T>   Type of the elements.
+     * @throws IOException  If writing fails.
+     */
+    public static <T> void writeArray(JsonGenerator generator, T[] values, Codec<T> codec) throws IOException {
+        if (values == null){
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (T value : values){
+            codec.write(generator, value);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes a JSON array into bytes.
+     * @param values    The array.
+     * @param type  Type of the elements.
+     * @param <T>   Type of the elements.
+     * @return  The UTF-8 JSON.
+     * @throws IOException  If writing fails.
+     */
+    public static <T> byte[] writeArray(T[] values, Class<T> type) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator generator = FACTORY.createGenerator(bytes, JsonEncoding.UTF8)){
+            writeArray(generator, values, codec(type));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a string, or null for a JSON null. Numbers and booleans are read as their text, like an ObjectMapper does.
+     * @throws JsonParseException   If the value is an object or array.
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL){
+            return null;
+        }
+        if (token == null || !token.isScalarValue()){
+            throw new JsonParseException(parser, "Expected a string for " + fieldName(parser));
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Reads a whole number.
+     * @throws JsonParseException   If the value is not a number that fits in an int.
+     */
+    private static int readInt(JsonParser parser) throws IOException {
+        long value = readLong(parser);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE){
+            throw new JsonParseException(parser, "Number out of range for " + fieldName(parser));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a whole number.
+     * @throws JsonParseException   If the value is not a whole number.
+     */
+    private static long readLong(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT){
+            throw new JsonParseException(parser, "Expected a whole number for " + fieldName(parser));
+        }
+        return parser.getLongValue();
+    }
+
+    /**
+     * Reads a number.
+     * @throws JsonParseException   If the value is not a number.
+     */
+    private static double readDouble(JsonParser parser) throws IOException {
+        if (parser.currentToken() == null || !parser.currentToken().isNumeric()){
+            throw new JsonParseException(parser, "Expected a number for " + fieldName(parser));
+        }
+        return parser.getDoubleValue();
+    }
+
+    // the field being read, or the array it is in, for error messages
+    private static String fieldName(JsonParser parser) throws IOException {
+        String name = parser.getCurrentName();
+        return name == null ? "an array element" : "'" + name + "'";
+    }
+
+    /**
+     * Checks the parser is on the start of an object.
+     * @return  Boolean for whether it is, false if it is on a JSON null.
+     */
+    private static boolean startObject(JsonParser parser, String what) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL){
+            return false;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT){
+            throw new JsonParseException(parser, "Expected " + what);
+        }
+        return true;
+    }
+}
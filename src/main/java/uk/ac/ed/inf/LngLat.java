@@ -19,17 +19,7 @@ public record LngLat(double longitude, double latitude){
      * @param url The URL that the central area co-ordinates are accessed from.
      */
     public boolean inCentralArea(URL url){
-        CentralArea centralArea = CentralArea.getInstance(url);
-        if (this.longitude <= centralArea.getPoints()[0].longitude || this.latitude >= centralArea.getPoints()[0].latitude){
-            return false;
-        }
-        if (this.longitude <= centralArea.getPoints()[1].longitude || this.latitude <= centralArea.getPoints()[1].latitude){
-            return false;
-        }
-        if (this.longitude >= centralArea.getPoints()[2].longitude || this.latitude <= centralArea.getPoints()[2].latitude){
-            return false;
-        }
-        return !(this.longitude >= centralArea.getPoints()[3].longitude) && !(this.latitude >= centralArea.getPoints()[3].latitude);
+        return CentralArea.getInstance(url).contains(longitude, latitude);
     }
 
     /**
@@ -52,7 +42,17 @@ public record LngLat(double longitude, double latitude){
      * @return Euclidean distance between this point and the point inputted as a parameter as a double.
      */
     public double distanceTo(LngLat point){
-        return Math.sqrt(Math.pow(point.longitude - this.longitude,2) + Math.pow(point.latitude - this.latitude,2));
+        return distanceTo(point.longitude, point.latitude);
+    }
+
+    /**
+     * Returns the distance in degrees between this point and another point given by its coordinates.
+     * @param longitude Longitude of the other point.
+     * @param latitude  Latitude of the other point.
+     * @return Euclidean distance between the two points as a double.
+     */
+    public double distanceTo(double longitude, double latitude){
+        return Math.sqrt(Math.pow(longitude - this.longitude,2) + Math.pow(latitude - this.latitude,2));
     }
 
     /**
@@ -64,6 +64,16 @@ public record LngLat(double longitude, double latitude){
         return (this.distanceTo(point) < 0.00015);
     }
 
+    /**
+     * Returns whether the distance between this and another point given by its coordinates is strictly less than 0.00015 degrees.
+     * @param longitude Longitude of the other point.
+     * @param latitude  Latitude of the other point.
+     * @return A boolean for if this point is close to the other point.
+     */
+    public boolean closeTo(double longitude, double latitude){
+        return (this.distanceTo(longitude, latitude) < 0.00015);
+    }
+
     /**
      * Returns a LngLat object for the position of the drone after a move of an inputted number of degrees.
      * @param move The angle in degrees at which the drone moves.
@@ -73,10 +83,24 @@ public record LngLat(double longitude, double latitude){
         if (move == -1){
             return (new LngLat(this.longitude, this.latitude));
         }
+        // the 16 compass directions use their precomputed offsets
+        CompassDirection direction = CompassDirection.fromAngle(move);
+        if (direction != null){
+            return nextPosition(direction);
+        }
         else {
             double newLatitude = this.latitude + Math.cos(Math.toRadians(move)) * 0.00015;
             double newLongitude = this.longitude + Math.sin(Math.toRadians(move)) * 0.00015;
             return new LngLat(newLongitude, newLatitude);
         }
     }
+
+    /**
+     * Returns a LngLat object for the position of the drone after a move in one of the 16 compass directions.
+     * @param direction The direction the drone moves in.
+     * @return A LngLat object with the new position of the drone.
+     */
+    public LngLat nextPosition(CompassDirection direction){
+        return new LngLat(direction.nextLongitude(this.longitude), direction.nextLatitude(this.latitude));
+    }
 }
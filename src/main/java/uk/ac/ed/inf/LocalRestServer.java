@@ -0,0 +1,189 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A stand-in for the REST server, serving generated data on a local port so the program can be run against any number
+ * of orders, restaurants and No-Fly zones without the real server. It has the same endpoints: restaurants, noFlyZones,
+ * centralArea and orders/{date}, with or without a trailing slash. Orders are generated while they are sent, so a day of
+ * a million orders needs no more memory than a day of ten. Every response has an ETag made from the generator settings,
+ * so snapshots kept by the program are revalidated instead of downloaded again.
+ */
+public class LocalRestServer implements Closeable {
+    private final WorkloadGenerator generator;
+    private final int ordersPerDay;
+    private final Restaurant[] restaurants;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "local-rest-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the same generator settings always give the same data, so they identify every version of a response
+    private final String version;
+    private final byte[] restaurantsJson;
+    private final byte[] noFlyZonesJson;
+    private final byte[] centralAreaJson;
+
+    /**
+     * Generates the restaurants and No-Fly zones and starts serving them.
+     * @param port  Port to listen on, or 0 to use any free port.
+     * @param seed  Seed the data is generated from.
+     * @param ordersPerDay  Number of orders on every day.
+     * @param restaurantCount   Number of restaurants, at least 2.
+     * @param noFlyZoneCount    Number of No-Fly zones wanted, fewer are served if they don't all fit.
+     * @throws IOException  If the port can't be listened on.
+     */
+    public LocalRestServer(int port, long seed, int ordersPerDay, int restaurantCount, int noFlyZoneCount) throws IOException {
+        this.generator = new WorkloadGenerator(seed);
+        this.ordersPerDay = ordersPerDay;
+        this.restaurants = generator.restaurants(restaurantCount);
+        this.version = "\"" + Long.toHexString(seed) + "-" + ordersPerDay + "-" + restaurantCount + "-" + noFlyZoneCount + "\"";
+        restaurantsJson = JsonCodecs.writeArray(restaurants, Restaurant.class);
+        noFlyZonesJson = JsonCodecs.writeArray(generator.noFlyZones(noFlyZoneCount, restaurants), NoFlyZone.class);
+        centralAreaJson = centralAreaJson();
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/restaurants", exchange -> sendBytes(exchange, restaurantsJson));
+        server.createContext("/noFlyZones", exchange -> sendBytes(exchange, noFlyZonesJson));
+        server.createContext("/centralArea", exchange -> sendBytes(exchange, centralAreaJson));
+        server.createContext("/orders", this::sendOrders);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the base URL to give the program, ending with a /.
+     * @return  The base URL.
+     */
+    public String getBaseUrl(){
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Returns the restaurants being served.
+     * @return  The restaurants.
+     */
+    public Restaurant[] getRestaurants(){
+        return restaurants;
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close(){
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private byte[] centralAreaJson() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator json = JsonCodecs.FACTORY.createGenerator(bytes)){
+            json.writeStartArray();
+            char name = 'A';
+            for (LngLat corner : WorkloadGenerator.CENTRAL_AREA){
+                json.writeStartObject();
+                json.writeStringField("name", Character.toString(name++));
+                json.writeNumberField("longitude", corner.longitude());
+                json.writeNumberField("latitude", corner.latitude());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Answers a request with a fixed body, or not modified if the client already has it.
+     */
+    private void sendBytes(HttpExchange exchange, byte[] body) throws IOException {
+        try (exchange){
+            if (notModified(exchange)){
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * Answers a request for a day of orders, generating them as they are written out in chunks.
+     */
+    private void sendOrders(HttpExchange exchange) throws IOException {
+        try (exchange){
+            String date = exchange.getRequestURI().getPath().substring("/orders".length()).replace("/", "");
+            try {
+                LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (notModified(exchange)){
+                return;
+            }
+            // a length of 0 means the body is sent in chunks, as its length isn't known until it has been generated
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = new BufferedOutputStream(exchange.getResponseBody(), 1 << 16);
+            try (JsonGenerator json = JsonCodecs.FACTORY.createGenerator(body)){
+                json.writeStartArray();
+                generator.orders(date, ordersPerDay, restaurants, order -> JsonCodecs.ORDER.write(json, order));
+                json.writeEndArray();
+            }
+        } catch (IOException e) {
+            // the client went away part way through, which only affects that client
+            System.err.println("Could not send orders: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the ETag of the response, and answers not modified if the client already has this version.
+     * @return  Boolean for whether the not modified response was sent.
+     */
+    private boolean notModified(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", version);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (version.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))){
+            exchange.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs the stand-in until it is killed.
+     * @param args  The port, then optionally the flags --seed, --orders, --restaurants and --no-fly-zones.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Invalid arguments, please input the port");
+            return;
+        }
+        RunOptions options = new RunOptions(args, 1);
+        try {
+            LocalRestServer server = new LocalRestServer(Integer.parseInt(args[0]), Long.parseLong(options.get("seed", "0")),
+                    options.getInt("orders", 10000), options.getInt("restaurants", 4), options.getInt("no-fly-zones", 4));
+            System.out.println("Serving generated data at " + server.getBaseUrl());
+            // the server's threads are daemons, so keep the main thread alive
+            Thread.currentThread().join();
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid arguments, the port and seed must be numbers");
+        } catch (IOException e) {
+            System.err.println("Could not start the server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
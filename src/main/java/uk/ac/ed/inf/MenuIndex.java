@@ -0,0 +1,150 @@
+package uk.ac.ed.inf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The menus of all the restaurants compiled into one map from item name to the restaurant selling it and its price, so
+ * an order can be validated with one lookup per pizza rather than searching every menu. Item names are assumed to be
+ * unique across restaurants, as they are on the REST server; if a name is repeated the first restaurant selling it is used.
+ * Outcomes are not remembered here, so the index can be shared by any number of planners without locking; a day's
+ * orders are validated once with checkAll and the outcomes passed along with the orders.
+ */
+public class MenuIndex {
+    // number of indexes of() keeps, so days for a few sets of restaurants don't keep rebuilding them
+    private static final int RECENT = 4;
+    private static volatile MenuIndex[] recent = new MenuIndex[0];
+
+    /**
+     * Outcome of validating an order.
+     * @param outcome   The OrderOutcome of the order as a string if it is invalid, or "Valid" if it is valid.
+     * @param restaurant    The restaurant the first pizza of the order comes from, or null if it is not on any menu.
+     */
+    public record Validation(String outcome, Restaurant restaurant) {}
+
+    // restaurant index and price in pence of each item
+    private record MenuItem(int restaurant, int priceInPence) {}
+
+    private final Restaurant[] restaurants;
+    private final Map<String, MenuItem> items = new HashMap<>();
+
+    /**
+     * Builds the index of the restaurants' menus.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     */
+    public MenuIndex(Restaurant[] restaurants){
+        this.restaurants = restaurants;
+        for (int r = 0; r < restaurants.length; r++){
+            for (Item item : restaurants[r].menu()){
+                items.putIfAbsent(item.name(), new MenuItem(r, item.priceInPence()));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of an array of restaurants, reusing one of the last few built if it was for the same array.
+     * This is a convenience for callers which only have the restaurants; a long-running planner builds the index once
+     * and passes it in.
+     * @param restaurants   The restaurants pizzas can be ordered from.
+     * @return  The menu index.
+     */
+    public static MenuIndex of(Restaurant[] restaurants){
+        MenuIndex[] current = recent;
+        for (MenuIndex index : current){
+            if (index.restaurants == restaurants){
+                return index;
+            }
+        }
+        MenuIndex index = new MenuIndex(restaurants);
+        // most recent first, dropping the oldest; an index lost to a racing update is just built again
+        MenuIndex[] updated = new MenuIndex[Math.min(current.length + 1, RECENT)];
+        updated[0] = index;
+        System.arraycopy(current, 0, updated, 1, updated.length - 1);
+        recent = updated;
+        return index;
+    }
+
+    /**
+     * Returns the restaurants this index was built from.
+     * @return  The restaurants pizzas can be ordered from.
+     */
+    public Restaurant[] getRestaurants(){
+        return restaurants;
+    }
+
+    /**
+     * Returns whether an item is on any restaurant's menu.
+     * @param name  Name of the item.
+     * @return  Boolean for whether the item exists.
+     */
+    public boolean contains(String name){
+        return items.containsKey(name);
+    }
+
+    /**
+     * Returns the cost of delivering a set of pizzas, including the delivery charge, without checking how many there are.
+     * @param pizzas    Names of the pizzas ordered.
+     * @return  The cost in pence, or -1 if a pizza does not exist or they do not all come from the same restaurant.
+     */
+    public int deliveryCost(String... pizzas){
+        int cost = 100;
+        for (String pizza : pizzas){
+            MenuItem item = items.get(pizza);
+            if (item == null || item.restaurant() != items.get(pizzas[0]).restaurant()){
+                return -1;
+            }
+            cost += item.priceInPence();
+        }
+        return cost;
+    }
+
+    /**
+     * Validates every order of a day once, so the outcomes can be passed to everything that needs them instead of
+     * each working them out again.
+     * @param orders    The orders to validate.
+     * @return  The outcome of validating each order, in the same order as the orders.
+     */
+    public Validation[] checkAll(Order[] orders){
+        Validation[] validations = new Validation[orders.length];
+        for (int i = 0; i < orders.length; i++){
+            validations[i] = check(orders[i]);
+        }
+        return validations;
+    }
+
+    /**
+     * Validates an order. The checks are made in the same order as Order.getValidity always has, so the first problem
+     * found is the one reported.
+     * @param order The order to validate.
+     * @return  The outcome of validating the order.
+     */
+    public Validation check(Order order){
+        String[] pizzas = order.orderItems();
+        Restaurant restaurant = pizzas.length > 0 && items.containsKey(pizzas[0]) ? restaurants[items.get(pizzas[0]).restaurant()] : null;
+        if (!order.isCardNumberValid()){
+            return new Validation(OrderOutcome.InvalidCardNumber.toString(), restaurant);
+        }
+        if (!order.isCardExpiryValid(order.orderDate())){
+            return new Validation(OrderOutcome.InvalidExpiryDate.toString(), restaurant);
+        }
+        if (!order.isCVVValid()){
+            return new Validation(OrderOutcome.InvalidCvv.toString(), restaurant);
+        }
+        if (!order.validPizzaCount()){
+            return new Validation(OrderOutcome.InvalidPizzaCount.toString(), restaurant);
+        }
+        for (String pizza : pizzas){
+            if (!contains(pizza)){
+                return new Validation(OrderOutcome.InvalidPizzaNotDefined.toString(), restaurant);
+            }
+        }
+        int cost = deliveryCost(pizzas);
+        if (cost < 0){
+            return new Validation(OrderOutcome.InvalidPizzaCombinationMultipleSuppliers.toString(), restaurant);
+        }
+        if (cost != order.priceTotalInPence()){
+            return new Validation(OrderOutcome.InvalidTotal.toString(), restaurant);
+        }
+        return new Validation("Valid", restaurant);
+    }
+}
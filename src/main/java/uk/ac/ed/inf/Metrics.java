@@ -0,0 +1,302 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of where the time of a run goes. Every phase of the pipeline (fetching the REST data, validating
+ * orders, planning each order and writing each file) is a JFR event, recorded whenever the JVM is running a flight
+ * recording. With --metrics the phases are also timed and the hot paths counted: findBestMove calls, candidate moves
+ * rejected for crossing a No-Fly zone, for being explored already or for re-entering the central area, edge tests
+ * and the length of each order's path, and a JSON summary is written at the end of the run.
+ * When neither is on, the events are never committed and the counters are skipped by a single check of a static flag.
+ */
+public class Metrics {
+    /** The phases of the pipeline. */
+    public enum Phase { FETCH, VALIDATION, PLANNING, WRITING }
+
+    // only ever set before planning starts, so the threads doing the work always see it
+    private static boolean enabled = false;
+    private static final LongAdder[] PHASE_NANOS = new LongAdder[Phase.values().length];
+    private static final LongAdder[] PHASE_COUNTS = new LongAdder[Phase.values().length];
+    /** Calls of App.findBestMove. */
+    public static final LongAdder FIND_BEST_MOVE_CALLS = new LongAdder();
+    /** Candidate moves rejected because they cross a No-Fly zone. */
+    public static final LongAdder REJECTED_NO_FLY = new LongAdder();
+    /** Candidate moves rejected because their position has already been explored. */
+    public static final LongAdder REJECTED_EXPLORED = new LongAdder();
+    /** Candidate moves rejected because they re-enter the central area after leaving it. */
+    public static final LongAdder REJECTED_CENTRAL = new LongAdder();
+    /** Tests of a move against a No-Fly zone edge. */
+    public static final LongAdder EDGE_TESTS = new LongAdder();
+    private static final LongAdder ORDER_PATHS = new LongAdder();
+    private static final LongAdder ORDER_PATH_MOVES = new LongAdder();
+    private static final LongAccumulator LONGEST_ORDER_PATH = new LongAccumulator(Math::max, 0);
+    // when the counters were turned on or last reset
+    private static long started = System.nanoTime();
+
+    static {
+        for (int i = 0; i < PHASE_NANOS.length; i++){
+            PHASE_NANOS[i] = new LongAdder();
+            PHASE_COUNTS[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns whether the counters are on.
+     * @return  Boolean for whether --metrics was given.
+     */
+    public static boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Turns the counters on or off, which must be done before any planning starts.
+     * @param on    Whether to count.
+     */
+    public static void setEnabled(boolean on){
+        enabled = on;
+        started = System.nanoTime();
+    }
+
+    /**
+     * Sets every counter back to zero.
+     */
+    public static void reset(){
+        for (int i = 0; i < PHASE_NANOS.length; i++){
+            PHASE_NANOS[i].reset();
+            PHASE_COUNTS[i].reset();
+        }
+        for (LongAdder counter : new LongAdder[]{FIND_BEST_MOVE_CALLS, REJECTED_NO_FLY, REJECTED_EXPLORED,
+                REJECTED_CENTRAL, EDGE_TESTS, ORDER_PATHS, ORDER_PATH_MOVES}){
+            counter.reset();
+        }
+        LONGEST_ORDER_PATH.reset();
+        started = System.nanoTime();
+    }
+
+    /**
+     * Returns the total time spent in a phase.
+     * @param phase The phase.
+     * @return  The time in nanoseconds, summed over every thread.
+     */
+    public static long phaseNanos(Phase phase){
+        return PHASE_NANOS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns how many times a phase has finished.
+     * @param phase The phase.
+     * @return  The number of times.
+     */
+    public static long phaseCount(Phase phase){
+        return PHASE_COUNTS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Counts the moves of one order's path, there and back.
+     * @param moves Number of moves.
+     */
+    public static void orderPath(int moves){
+        if (enabled){
+            ORDER_PATHS.increment();
+            ORDER_PATH_MOVES.add(moves);
+            LONGEST_ORDER_PATH.accumulate(moves);
+        }
+    }
+
+    /**
+     * Writes the summary selected by the --metrics flag, if it was given: to the file named by the flag, or as one line
+     * on the standard output for just --metrics.
+     * @param options   The command-line flags.
+     */
+    public static void writeSummary(RunOptions options){
+        if (!options.has("metrics")){
+            return;
+        }
+        String file = options.get("metrics", "true");
+        try {
+            if (file.equals("true")){
+                writeSummary(System.out);
+                System.out.println();
+            } else {
+                try (OutputStream out = Files.newOutputStream(Path.of(file))){
+                    writeSummary(out);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write the metrics summary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the counters as a JSON object: the time since they were turned on, each phase's count and milliseconds
+     * summed over every thread, and the hot path counters.
+     * @param out   Stream the summary is written to, which is left open.
+     * @throws IOException  If the summary can't be written.
+     */
+    public static void writeSummary(OutputStream out) throws IOException {
+        try (JsonGenerator json = JsonCodecs.FACTORY.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)){
+            json.writeStartObject();
+            json.writeNumberField("wallMillis", (System.nanoTime() - started) / 1_000_000);
+            json.writeObjectFieldStart("phases");
+            for (Phase phase : Phase.values()){
+                json.writeObjectFieldStart(phase.name().toLowerCase());
+                json.writeNumberField("count", phaseCount(phase));
+                json.writeNumberField("millis", phaseNanos(phase) / 1_000_000.0);
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.writeNumberField("findBestMoveCalls", FIND_BEST_MOVE_CALLS.sum());
+            json.writeObjectFieldStart("rejectedMoves");
+            json.writeNumberField("noFlyZone", REJECTED_NO_FLY.sum());
+            json.writeNumberField("explored", REJECTED_EXPLORED.sum());
+            json.writeNumberField("centralArea", REJECTED_CENTRAL.sum());
+            json.writeEndObject();
+            json.writeNumberField("edgeTests", EDGE_TESTS.sum());
+            long paths = ORDER_PATHS.sum();
+            json.writeObjectFieldStart("orderPaths");
+            json.writeNumberField("count", paths);
+            json.writeNumberField("moves", ORDER_PATH_MOVES.sum());
+            json.writeNumberField("meanMoves", paths == 0 ? 0 : (double) ORDER_PATH_MOVES.sum() / paths);
+            json.writeNumberField("maxMoves", LONGEST_ORDER_PATH.get());
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * A phase of the pipeline, which is a JFR event and also timed into the summary when the counters are on.
+     * Call end once the phase has finished.
+     */
+    @Category("PizzaDronz")
+    public abstract static class PhaseEvent extends Event {
+        // transient fields are not recorded by JFR
+        private final transient Phase phase;
+        private final transient long started;
+
+        PhaseEvent(Phase phase){
+            this.phase = phase;
+            this.started = enabled ? System.nanoTime() : 0;
+            begin();
+        }
+
+        /**
+         * Ends the phase, committing the event if it is being recorded.
+         */
+        public void finish(){
+            if (enabled){
+                PHASE_NANOS[phase.ordinal()].add(System.nanoTime() - started);
+                PHASE_COUNTS[phase.ordinal()].increment();
+            }
+            commit();
+        }
+    }
+
+    /** Fetching and parsing a resource from the REST server or a snapshot. */
+    @Name("uk.ac.ed.inf.Fetch")
+    @Label("Fetch")
+    public static class FetchEvent extends PhaseEvent {
+        @Label("Resource")
+        String resource;
+
+        /**
+         * Starts fetching a resource.
+         * @param resource  The resource, such as 'restaurants/'.
+         */
+        public FetchEvent(String resource){
+            super(Phase.FETCH);
+            this.resource = resource;
+        }
+    }
+
+    /** Validating a day of orders. */
+    @Name("uk.ac.ed.inf.Validation")
+    @Label("Validation")
+    public static class ValidationEvent extends PhaseEvent {
+        @Label("Orders")
+        int orders;
+
+        /**
+         * Starts validating orders.
+         * @param orders    Number of orders, or 0 if they are validated while being read.
+         */
+        public ValidationEvent(int orders){
+            super(Phase.VALIDATION);
+            this.orders = orders;
+        }
+
+        /**
+         * Ends the validation once the number of orders is known.
+         * @param orders    Number of orders validated.
+         */
+        public void finish(int orders){
+            this.orders = orders;
+            finish();
+        }
+    }
+
+    /** Planning the trip of one order. */
+    @Name("uk.ac.ed.inf.OrderPlan")
+    @Label("Order Plan")
+    @Description("Planning the path to an order's restaurant and back")
+    public static class OrderPlanEvent extends PhaseEvent {
+        @Label("Order Number")
+        String orderNo;
+        @Label("Moves")
+        int moves;
+        @Label("Found")
+        boolean found;
+
+        /**
+         * Starts planning an order.
+         * @param orderNo   The order number.
+         */
+        public OrderPlanEvent(String orderNo){
+            super(Phase.PLANNING);
+            this.orderNo = orderNo;
+        }
+
+        /**
+         * Ends the planning, counting the path if one was found.
+         * @param found Whether a path was found.
+         * @param moves Number of moves in the path.
+         */
+        public void finish(boolean found, int moves){
+            this.found = found;
+            this.moves = moves;
+            if (found){
+                orderPath(moves);
+            }
+            finish();
+        }
+    }
+
+    /** Writing one result file. */
+    @Name("uk.ac.ed.inf.Write")
+    @Label("Write")
+    public static class WriteEvent extends PhaseEvent {
+        @Label("File")
+        String file;
+
+        /**
+         * Starts writing a file.
+         * @param file  Path of the file.
+         */
+        public WriteEvent(Path file){
+            super(Phase.WRITING);
+            this.file = file.toString();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package uk.ac.ed.inf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mapbox.geojson.LineString;
 import com.mapbox.geojson.MultiPolygon;
 import com.mapbox.geojson.Point;
@@ -25,23 +24,7 @@ public record NoFlyZone(String name, double[][] coordinates) {
         try{
             URL noflyurl = new URL(baseUrlStr + "noFlyZones");
             // retrieve array of NoFlyZone objects from REST server
-            NoFlyZone[] noFlyZone = new ObjectMapper().readValue(noflyurl, NoFlyZone[].class);
-            // list of mapbox.geojson Polygon objects, the format required to make a mapbox.geojson MultiPolygon object
-            List<Polygon> polygons = new ArrayList<>(){};
-            for (NoFlyZone zone: noFlyZone){
-                // create 2d list of points, the format required to make a mapbox.geojson Polygon object
-                List<List<Point>> points = new ArrayList<>();
-                // initialise first list in points, which holds the vertices that define polygon
-                points.add(new ArrayList<>());
-                for (double[] point: zone.coordinates()) {
-                    // add each point in the no-fly zone to the formatted list of points
-                    points.get(0).add(Point.fromLngLat(point[0], point[1]));
-                }
-                // create a Polygon object from the 2d list of points
-                polygons.add(Polygon.fromLngLats(points));
-            }
-            // create a MultiPolygon object from the list of Polygon objects
-            return MultiPolygon.fromPolygons(polygons);
+            return toMultiPolygon(JsonCodecs.readArray(noflyurl, NoFlyZone.class));
         }
         catch (IOException e) {
             System.err.println("I/O Exception, please check connection and input data");
@@ -49,6 +32,30 @@ public record NoFlyZone(String name, double[][] coordinates) {
         }
     }
 
+    /**
+     * Converts the No-Fly zones into a mapbox MultiPolygon object.
+     * @param noFlyZone Array of NoFlyZone objects, as retrieved from the REST server.
+     * @return  A MultiPolygon object of the No-Fly Zones.
+     */
+    public static MultiPolygon toMultiPolygon(NoFlyZone[] noFlyZone){
+        // list of mapbox.geojson Polygon objects, the format required to make a mapbox.geojson MultiPolygon object
+        List<Polygon> polygons = new ArrayList<>(){};
+        for (NoFlyZone zone: noFlyZone){
+            // create 2d list of points, the format required to make a mapbox.geojson Polygon object
+            List<List<Point>> points = new ArrayList<>();
+            // initialise first list in points, which holds the vertices that define polygon
+            points.add(new ArrayList<>());
+            for (double[] point: zone.coordinates()) {
+                // add each point in the no-fly zone to the formatted list of points
+                points.get(0).add(Point.fromLngLat(point[0], point[1]));
+            }
+            // create a Polygon object from the 2d list of points
+            polygons.add(Polygon.fromLngLats(points));
+        }
+        // create a MultiPolygon object from the list of Polygon objects
+        return MultiPolygon.fromPolygons(polygons);
+    }
+
     /**
      * Checks if a drone move intersects the No-Fly zones.
      * @param noFlyZones The No-Fly Zones of the area, as a mapbox MultiPolygon object.
@@ -57,35 +64,8 @@ public record NoFlyZone(String name, double[][] coordinates) {
      * @return          A boolean for whether the drone move intersects the No-Fly Zone.
      */
     public static boolean intersectsNoFlyZones(MultiPolygon noFlyZones, LngLat position, float i){
-        boolean intersects = false;
-        // check intersections for each no-fly zone in the no-fly zones
-        for (List<List<Point>> polygon: noFlyZones.coordinates()){
-            // iterate through each vertex on the no-fly zone (includes the first vertex twice)
-            for (int j = 0; j < polygon.get(0).size()-1; j++){
-                // add the vertex and its adjacent vertex to a list
-                List<Point> border = new ArrayList<>();
-                border.add(polygon.get(0).get(j));
-                border.add(polygon.get(0).get(j+1));
-                // create a line segment from the 2 points
-                LineString borderline = LineString.fromLngLats(border);
-                // create a line segment from the 2 positions of the drone before and after the move considered
-                List<Point> path = new ArrayList<>();
-                path.add(Point.fromLngLat(position.longitude(), position.latitude()));
-                path.add(Point.fromLngLat(position.nextPosition(i).longitude(), position.nextPosition(i).latitude()));
-                LineString pathline = LineString.fromLngLats(path);
-                // if the two lines intersect, the drone intersects the no-fly zone and we no longer need to consider any more lines
-                if (linesIntersect(borderline, pathline)){
-                    intersects = true;
-                    break;
-                }
-            }
-            // if an intersection has been found, there is no need to consider anymore lines
-            if (intersects){
-                break;
-            }
-        }
-        // return whether a line intersection has been found
-        return intersects;
+        // the No-Fly zones are compiled into flat edge arrays once, and reused while the same MultiPolygon is passed in
+        return NoFlyZoneSet.of(noFlyZones).intersects(position, i);
     }
 
     /**
@@ -97,14 +77,28 @@ public record NoFlyZone(String name, double[][] coordinates) {
      * @return  A boolean for whether the two lines segments intersect each other.
      */
     public static boolean linesIntersect(LineString line1, LineString line2){
-        double latstart1 = line1.coordinates().get(0).latitude(); //x1
-        double latend1 = line1.coordinates().get(1).latitude(); //x2
-        double longstart1 = line1.coordinates().get(0).longitude(); //y1
-        double longend1 = line1.coordinates().get(1).longitude(); //y2
-        double latstart2 = line2.coordinates().get(0).latitude(); //x3
-        double latend2 = line2.coordinates().get(1).latitude(); //x4
-        double longstart2 = line2.coordinates().get(0).longitude(); //y3
-        double longend2 = line2.coordinates().get(1).longitude(); //y4
+        return linesIntersect(line1.coordinates().get(0).longitude(), line1.coordinates().get(0).latitude(),
+                line1.coordinates().get(1).longitude(), line1.coordinates().get(1).latitude(),
+                line2.coordinates().get(0).longitude(), line2.coordinates().get(0).latitude(),
+                line2.coordinates().get(1).longitude(), line2.coordinates().get(1).latitude());
+    }
+
+    /**
+     * Check if two line segments, given by the coordinates of their end points, intersect.
+     * Same algorithm as linesIntersect(LineString, LineString), without needing any objects.
+     * @param longstart1    Longitude of the start of the first line.
+     * @param latstart1     Latitude of the start of the first line.
+     * @param longend1      Longitude of the end of the first line.
+     * @param latend1       Latitude of the end of the first line.
+     * @param longstart2    Longitude of the start of the second line.
+     * @param latstart2     Latitude of the start of the second line.
+     * @param longend2      Longitude of the end of the second line.
+     * @param latend2       Latitude of the end of the second line.
+     * @return  A boolean for whether the two lines segments intersect each other.
+     */
+    public static boolean linesIntersect(double longstart1, double latstart1, double longend1, double latend1,
+                                         double longstart2, double latstart2, double longend2, double latend2){
+        // latitudes are x1 to x4 and longitudes are y1 to y4
 
         // (x1 - x2) * (y3 - y4) - (y1 - y2) * (x3 - x4)
         double denominator = ((latstart1 - latend1) * (longstart2 - longend2)) - ((longstart1 - longend1) * (latstart2 - latend2));
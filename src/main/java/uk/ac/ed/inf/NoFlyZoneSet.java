@@ -0,0 +1,232 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+
+import java.util.List;
+
+/**
+ * The No-Fly zones compiled into flat arrays of edge coordinates, so that checking a drone move against them does not create any objects.
+ * Short segments such as drone moves are only tested against the edges in the nearby cells of an EdgeGrid. Longer
+ * segments fall back to testing the polygons one by one, skipping any polygon whose bounding box they miss.
+ */
+public class NoFlyZoneSet {
+    // padding added to bounding boxes, so rounding can never reject a move the exact edge test would accept
+    private static final double BOUNDS_PADDING = 1e-12;
+    // segments covering more grid cells than this are tested polygon by polygon instead
+    private static final int MAX_GRID_CELLS = 64;
+    // number of compiled sets of() keeps, so a few planners with different No-Fly zones don't keep recompiling
+    private static final int RECENT = 4;
+    private static volatile NoFlyZoneSet[] recent = new NoFlyZoneSet[0];
+
+    private final MultiPolygon source;
+    // edges packed as fromLongitude, fromLatitude, toLongitude, toLatitude
+    private final double[] edges;
+    // the edges of polygon p are edges polygonStarts[p] (inclusive) to polygonStarts[p + 1] (exclusive)
+    private final int[] polygonStarts;
+    // bounding boxes packed as minLongitude, minLatitude, maxLongitude, maxLatitude
+    private final double[] polygonBounds;
+    private final EdgeGrid grid;
+
+    /**
+     * Compiles the outer borders of all the polygons in a MultiPolygon.
+     * @param noFlyZones    The No-Fly zones, as a mapbox MultiPolygon object.
+     */
+    public NoFlyZoneSet(MultiPolygon noFlyZones){
+        this.source = noFlyZones;
+        List<List<List<Point>>> polygons = noFlyZones.coordinates();
+        int edgeCount = 0;
+        for (List<List<Point>> polygon : polygons){
+            edgeCount += Math.max(0, polygon.get(0).size() - 1);
+        }
+        edges = new double[4 * edgeCount];
+        polygonStarts = new int[polygons.size() + 1];
+        polygonBounds = new double[4 * polygons.size()];
+        int edge = 0;
+        for (int p = 0; p < polygons.size(); p++){
+            List<Point> border = polygons.get(p).get(0);
+            polygonStarts[p] = edge;
+            double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+            double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+            // the border includes the first vertex twice, so each vertex and the next one make an edge
+            for (int j = 0; j < border.size() - 1; j++){
+                Point from = border.get(j);
+                Point to = border.get(j + 1);
+                edges[4 * edge] = from.longitude();
+                edges[4 * edge + 1] = from.latitude();
+                edges[4 * edge + 2] = to.longitude();
+                edges[4 * edge + 3] = to.latitude();
+                minLng = Math.min(minLng, Math.min(from.longitude(), to.longitude()));
+                minLat = Math.min(minLat, Math.min(from.latitude(), to.latitude()));
+                maxLng = Math.max(maxLng, Math.max(from.longitude(), to.longitude()));
+                maxLat = Math.max(maxLat, Math.max(from.latitude(), to.latitude()));
+                edge++;
+            }
+            polygonBounds[4 * p] = minLng - BOUNDS_PADDING;
+            polygonBounds[4 * p + 1] = minLat - BOUNDS_PADDING;
+            polygonBounds[4 * p + 2] = maxLng + BOUNDS_PADDING;
+            polygonBounds[4 * p + 3] = maxLat + BOUNDS_PADDING;
+        }
+        polygonStarts[polygons.size()] = edge;
+        grid = new EdgeGrid(edges, EdgeGrid.DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Returns the compiled form of a MultiPolygon, reusing one of the last few compiled if it was for the same object.
+     * This is a convenience for callers which only have the MultiPolygon; planners compile the set once and keep it.
+     * @param noFlyZones    The No-Fly zones, as a mapbox MultiPolygon object.
+     * @return  The compiled No-Fly zones.
+     */
+    public static NoFlyZoneSet of(MultiPolygon noFlyZones){
+        NoFlyZoneSet[] current = recent;
+        for (NoFlyZoneSet compiled : current){
+            if (compiled.source == noFlyZones){
+                return compiled;
+            }
+        }
+        NoFlyZoneSet compiled = new NoFlyZoneSet(noFlyZones);
+        // most recent first, dropping the oldest; a set lost to a racing update is just compiled again
+        NoFlyZoneSet[] updated = new NoFlyZoneSet[Math.min(current.length + 1, RECENT)];
+        updated[0] = compiled;
+        System.arraycopy(current, 0, updated, 1, updated.length - 1);
+        recent = updated;
+        return compiled;
+    }
+
+    /**
+     * Returns the MultiPolygon these No-Fly zones were compiled from.
+     * @return  The No-Fly zones, as a mapbox MultiPolygon object.
+     */
+    public MultiPolygon getSource(){
+        return source;
+    }
+
+    /**
+     * Returns a hash of the coordinates of every edge, which changes whenever the No-Fly zones change.
+     * @return  Fingerprint of the No-Fly zones.
+     */
+    public long fingerprint(){
+        long hash = polygonStarts.length;
+        for (double coordinate : edges){
+            hash = 31 * hash + Double.doubleToLongBits(coordinate);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the total number of polygon edges.
+     * @return  Number of edges across all the No-Fly zones.
+     */
+    public int getEdgeCount(){
+        return edges.length / 4;
+    }
+
+    /**
+     * Checks if a drone move intersects the No-Fly zones.
+     * @param position  The current position of the drone.
+     * @param angle     The angle of the drone move.
+     * @return  A boolean for whether the drone move intersects the No-Fly zones.
+     */
+    public boolean intersects(LngLat position, double angle){
+        CompassDirection direction = CompassDirection.fromAngle(angle);
+        if (direction != null){
+            return intersects(position, direction);
+        }
+        LngLat next = position.nextPosition(angle);
+        return intersects(position.longitude(), position.latitude(), next.longitude(), next.latitude());
+    }
+
+    /**
+     * Checks if a drone move in one of the compass directions intersects the No-Fly zones.
+     * @param position  The current position of the drone.
+     * @param direction The direction of the drone move.
+     * @return  A boolean for whether the drone move intersects the No-Fly zones.
+     */
+    public boolean intersects(LngLat position, CompassDirection direction){
+        return intersects(position.longitude(), position.latitude(),
+                direction.nextLongitude(position.longitude()), direction.nextLatitude(position.latitude()));
+    }
+
+    /**
+     * Checks if the line segment between two points intersects the border of any No-Fly zone.
+     * @param fromLongitude Longitude of the start of the segment.
+     * @param fromLatitude  Latitude of the start of the segment.
+     * @param toLongitude   Longitude of the end of the segment.
+     * @param toLatitude    Latitude of the end of the segment.
+     * @return  A boolean for whether the segment intersects the No-Fly zones.
+     */
+    public boolean intersects(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        if (grid.cellsCovered(fromLongitude, fromLatitude, toLongitude, toLatitude) <= MAX_GRID_CELLS){
+            return grid.intersects(fromLongitude, fromLatitude, toLongitude, toLatitude);
+        }
+        double minLng = Math.min(fromLongitude, toLongitude);
+        double maxLng = Math.max(fromLongitude, toLongitude);
+        double minLat = Math.min(fromLatitude, toLatitude);
+        double maxLat = Math.max(fromLatitude, toLatitude);
+        int tests = 0;
+        boolean found = false;
+        search:
+        for (int p = 0; p < polygonStarts.length - 1; p++){
+            // skip polygons whose bounding box the segment does not overlap
+            if (maxLng < polygonBounds[4 * p] || minLat > polygonBounds[4 * p + 3]
+                    || minLng > polygonBounds[4 * p + 2] || maxLat < polygonBounds[4 * p + 1]){
+                continue;
+            }
+            for (int e = polygonStarts[p]; e < polygonStarts[p + 1]; e++){
+                tests++;
+                if (NoFlyZone.linesIntersect(edges[4 * e], edges[4 * e + 1], edges[4 * e + 2], edges[4 * e + 3],
+                        fromLongitude, fromLatitude, toLongitude, toLatitude)){
+                    found = true;
+                    break search;
+                }
+            }
+        }
+        if (Metrics.isEnabled()){
+            Metrics.EDGE_TESTS.add(tests);
+        }
+        return found;
+    }
+
+    /**
+     * Checks if a point lies inside any of the No-Fly zones, by counting how many edges a ray from the point crosses.
+     * @param longitude Longitude of the point.
+     * @param latitude  Latitude of the point.
+     * @return  A boolean for whether the point is inside a No-Fly zone.
+     */
+    public boolean contains(double longitude, double latitude){
+        for (int p = 0; p < polygonStarts.length - 1; p++){
+            if (longitude < polygonBounds[4 * p] || latitude < polygonBounds[4 * p + 1]
+                    || longitude > polygonBounds[4 * p + 2] || latitude > polygonBounds[4 * p + 3]){
+                continue;
+            }
+            boolean inside = false;
+            for (int e = polygonStarts[p]; e < polygonStarts[p + 1]; e++){
+                double fromLng = edges[4 * e], fromLat = edges[4 * e + 1], toLng = edges[4 * e + 2], toLat = edges[4 * e + 3];
+                // the ray goes east from the point, and crosses the edge if the edge spans the point's latitude east of it
+                if ((fromLat > latitude) != (toLat > latitude)
+                        && longitude < fromLng + (latitude - fromLat) / (toLat - fromLat) * (toLng - fromLng)){
+                    inside = !inside;
+                }
+            }
+            if (inside){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of edge tests checking a segment performs when it does not intersect anything, a measure of query cost.
+     * @param fromLongitude Longitude of the start of the segment.
+     * @param fromLatitude  Latitude of the start of the segment.
+     * @param toLongitude   Longitude of the end of the segment.
+     * @param toLatitude    Latitude of the end of the segment.
+     * @return  Number of edges the segment is tested against.
+     */
+    public int candidateCount(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        if (grid.cellsCovered(fromLongitude, fromLatitude, toLongitude, toLatitude) <= MAX_GRID_CELLS){
+            return grid.candidateCount(fromLongitude, fromLatitude, toLongitude, toLatitude);
+        }
+        return getEdgeCount();
+    }
+}
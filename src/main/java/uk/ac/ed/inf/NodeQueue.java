@@ -0,0 +1,104 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of search node indices, ordered by a priority and then by a tie-breaking value.
+ * Everything is kept in primitive arrays, so pushing and popping nodes does not create any objects.
+ */
+public class NodeQueue {
+    private int[] nodes = new int[64];
+    private double[] priorities = new double[64];
+    private double[] tieBreaks = new double[64];
+    private int size = 0;
+
+    /**
+     * Returns whether there are no nodes left in the queue.
+     * @return  Boolean for whether the queue is empty.
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of nodes in the queue.
+     * @return  Number of nodes in the queue.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Adds a node to the queue.
+     * @param node      Index of the node.
+     * @param priority  Priority of the node, nodes with lower priorities are popped first.
+     * @param tieBreak  Value used to order nodes with equal priorities, lower values are popped first.
+     */
+    public void push(int node, double priority, double tieBreak){
+        if (size == nodes.length){
+            nodes = Arrays.copyOf(nodes, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+            tieBreaks = Arrays.copyOf(tieBreaks, size * 2);
+        }
+        // sift the new node up from the bottom of the heap
+        int i = size++;
+        while (i > 0){
+            int parent = (i - 1) >>> 1;
+            if (!before(priority, tieBreak, priorities[parent], tieBreaks[parent])){
+                break;
+            }
+            set(i, nodes[parent], priorities[parent], tieBreaks[parent]);
+            i = parent;
+        }
+        set(i, node, priority, tieBreak);
+    }
+
+    /**
+     * Removes and returns the node with the lowest priority.
+     * @return  Index of the node with the lowest priority.
+     */
+    public int pop(){
+        int top = nodes[0];
+        size--;
+        int node = nodes[size];
+        double priority = priorities[size];
+        double tieBreak = tieBreaks[size];
+        // sift the last node down from the top of the heap
+        int i = 0;
+        while (true){
+            int child = 2 * i + 1;
+            if (child >= size){
+                break;
+            }
+            if (child + 1 < size && before(priorities[child + 1], tieBreaks[child + 1], priorities[child], tieBreaks[child])){
+                child++;
+            }
+            if (!before(priorities[child], tieBreaks[child], priority, tieBreak)){
+                break;
+            }
+            set(i, nodes[child], priorities[child], tieBreaks[child]);
+            i = child;
+        }
+        if (size > 0){
+            set(i, node, priority, tieBreak);
+        }
+        return top;
+    }
+
+    /**
+     * Removes all nodes from the queue, keeping the allocated arrays.
+     */
+    public void clear(){
+        size = 0;
+    }
+
+    private boolean before(double priority1, double tieBreak1, double priority2, double tieBreak2){
+        return priority1 < priority2 || (priority1 == priority2 && tieBreak1 < tieBreak2);
+    }
+
+    private void set(int i, int node, double priority, double tieBreak){
+        nodes[i] = node;
+        priorities[i] = priority;
+        tieBreaks[i] = tieBreak;
+    }
+}
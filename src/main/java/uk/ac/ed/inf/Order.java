@@ -1,18 +1,20 @@
 package uk.ac.ed.inf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.regex.Pattern;
 import java.time.*;
-import java.util.Comparator;
 
 /**
  * Class that represents an order made by a customer.
  */
 public record Order(String orderNo, String orderDate, String customer, String creditCardNumber, String creditCardExpiry, String cvv, int priceTotalInPence, String[] orderItems) {
+    // compiled once, as every order is checked against them
+    private static final Pattern CVV_FORMAT = Pattern.compile("\\d{3}");
+    private static final Pattern CARD_NUMBER_FORMAT = Pattern.compile("\\d{16}");
+    private static final DateTimeFormatter EXPIRY_FORMAT = DateTimeFormatter.ofPattern("MM/yy");
 
     /**
      * Returns the cost in pence of having a set of items (passed as a parameter)
@@ -29,31 +31,10 @@ public record Order(String orderNo, String orderDate, String customer, String cr
         else if(orderItems.length > 4){
             throw new InvalidPizzaCombinationException("Too Many Pizzas Ordered");
         }
-        int cost = 0;
-        //check if all order items are from the same restaurant
-        boolean sameRestaurant;
-        for (Restaurant restaurant: restaurants) {
-            sameRestaurant = true; //boolean that identifies whether all items ordered are from this restaurant
-            //check each item that has been ordered
-            for (String orderItem : orderItems) {
-                boolean orderItemInRestaurant = false; //boolean for whether this item ordered is on the menu for this restaurant
-                //see if that item is in the restaurant's menu
-                for (Item item : restaurant.menu()) {
-                    if (item.name().equals(orderItem)) { //if the names of the item ordered and the menu item are the same, this item is on the menu for this restaurant
-                        orderItemInRestaurant = true;
-                        cost += item.priceInPence(); //add item cost to total delivery cost
-                        break;
-                    }
-                }
-                //if this item is not in the menu for this restaurant, then this is not the restaurant all orders come from
-                if (!orderItemInRestaurant) {
-                    sameRestaurant = false;
-                }
-            }
-            //if all items have been ordered from this restaurant, then return the delivery cost of all the items
-            if (sameRestaurant){
-                return cost + 100;
-            }
+        // look the items up in the index of all the restaurants' menus
+        int cost = MenuIndex.of(restaurants).deliveryCost(orderItems);
+        if (cost >= 0){
+            return cost;
         }
         throw new InvalidPizzaCombinationException("Invalid Pizza Combination");
     }
@@ -67,7 +48,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
     public static Order[] getOrders(String baseUrl, String date){
         try{
             URL url = new URL(baseUrl + "orders/" + date);
-            return new ObjectMapper().readValue(url, Order[].class);
+            return JsonCodecs.readArray(url, Order.class);
         }
         catch (IOException e){
             e.printStackTrace();
@@ -80,7 +61,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return Boolean for whether the CVV is valid.
      */
     public boolean isCVVValid(){
-        return cvv.matches("\\d{3}");
+        return CVV_FORMAT.matcher(cvv).matches();
     }
 
     /**
@@ -88,7 +69,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return  Boolean for whether the card number is valid.
      */
     public boolean isCardNumberValid(){
-        return creditCardNumber.matches("\\d{16}");
+        return CARD_NUMBER_FORMAT.matcher(creditCardNumber).matches();
     }
 
     /**
@@ -98,7 +79,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      */
     public boolean isCardExpiryValid(String date){
         try {
-            LocalDate expiryDate = YearMonth.parse(creditCardExpiry, DateTimeFormatter.ofPattern("MM/yy")).atEndOfMonth();
+            LocalDate expiryDate = YearMonth.parse(creditCardExpiry, EXPIRY_FORMAT).atEndOfMonth();
             LocalDate orderDate = LocalDate.parse(date);
             return expiryDate.isAfter(orderDate);
         } catch(Exception e){
@@ -113,14 +94,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return  Boolean for whether the pizza exists.
      */
     public boolean isPizzaValid(String pizza, Restaurant[] restaurants){
-        for (Restaurant restaurant: restaurants){
-            for (Item item: restaurant.menu()){
-                if (item.name().equals(pizza)){
-                    return true;
-                }
-            }
-        }
-        return false;
+        return MenuIndex.of(restaurants).contains(pizza);
     }
 
     /**
@@ -151,12 +125,7 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return  Boolean for whether the pizzas all come from the same supplier.
      */
     public boolean sameSuppliers(Restaurant[] restaurants){
-        try {
-            Order.getDeliveryCost(restaurants, orderItems);
-            return true;
-        } catch(InvalidPizzaCombinationException e){
-            return false;
-        }
+        return validPizzaCount() && MenuIndex.of(restaurants).deliveryCost(orderItems) >= 0;
     }
 
     /**
@@ -165,60 +134,26 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return  Whether the order total cost matches the expected total order cost.
      */
     public boolean correctTotal(Restaurant[] restaurants){
-        try{
-            return (Order.getDeliveryCost(restaurants, orderItems) == priceTotalInPence);
-        }
-        catch (InvalidPizzaCombinationException e){
-            return false;
-        }
+        return validPizzaCount() && MenuIndex.of(restaurants).deliveryCost(orderItems) == priceTotalInPence;
     }
 
     /**
-     * Returns the order outcome of an order.
+     * Returns the order outcome of an order, checking the card details, the number of pizzas, that the pizzas exist and
+     * come from one restaurant, and the total cost, in that order.
      * @param restaurants   An array of restaurants that pizzas can be ordered from, each as a Restaurant object.
      * @return  The corresponding OrderOutcome Enum as a string if the order is not valid, or the String "valid" if it is.
      */
     public String getValidity(Restaurant[] restaurants){
-        if (!isCardNumberValid()){
-            return OrderOutcome.InvalidCardNumber.toString();
-        }
-        else if (!isCardExpiryValid(orderDate)){
-            return OrderOutcome.InvalidExpiryDate.toString();
-        }
-        else if (!isCVVValid()){
-            return OrderOutcome.InvalidCvv.toString();
-        }
-        else if (!validPizzaCount()){
-            return OrderOutcome.InvalidPizzaCount.toString();
-        }
-        else if (!pizzasDefined(restaurants)){
-            return OrderOutcome.InvalidPizzaNotDefined.toString();
-        }
-        else if (!sameSuppliers(restaurants)){
-            return OrderOutcome.InvalidPizzaCombinationMultipleSuppliers.toString();
-        }
-        else if(!correctTotal(restaurants)){
-            return OrderOutcome.InvalidTotal.toString();
-        }
-        else {
-            return "Valid";
-        }
+        return MenuIndex.of(restaurants).check(this).outcome();
     }
 
     /**
      * Gets the restaurant from which this order's pizzas have been ordered from (assuming the order is valid).
      * @param restaurants   An array of restaurants pizzas can be ordered from, each as Restaurant objects.
-     * @return  The restaurant from which the pizzas have been ordered.
+     * @return  The restaurant from which the pizzas have been ordered, or null if the first pizza is not on any menu.
      */
     public Restaurant getRestaurant(Restaurant[] restaurants){
-        for (Restaurant restaurant: restaurants){
-            for (Item item: restaurant.menu()){
-                if (item.name().equals(this.orderItems[0])){
-                    return restaurant;
-                }
-            }
-        }
-        return null;
+        return MenuIndex.of(restaurants).check(this).restaurant();
     }
 
     /**
@@ -229,22 +164,80 @@ public record Order(String orderNo, String orderDate, String customer, String cr
      * @return  A sorted list of pairs of orders.
      */
     public static ArrayList<Order> sortOrders(Order[] orders, Restaurant[] restaurants, LngLat position){
-        ArrayList<String[]> orderInfos = new ArrayList<>();
-        for (Order order: orders){
+        return sortOrders(orders, MenuIndex.of(restaurants), position);
+    }
+
+    /**
+     * Returns a list of orders, sorted in ascending order by distance between a starting position and the restaurant the order is picked up from
+     * @param orders    List of orders the drone is trying to deliver.
+     * @param index   Index of the menus of the restaurants pizzas can be ordered from.
+     * @param position  Starting position of the drone.
+     * @return  A sorted list of pairs of orders.
+     */
+    public static ArrayList<Order> sortOrders(Order[] orders, MenuIndex index, LngLat position){
+        return sortOrders(orders, index.checkAll(orders), position);
+    }
+
+    /**
+     * Returns a list of orders, sorted in ascending order by distance between a starting position and the restaurant the order is picked up from
+     * @param orders    List of orders the drone is trying to deliver.
+     * @param validations   The outcome of validating each order, which gives its restaurant, see MenuIndex.checkAll.
+     * @param position  Starting position of the drone.
+     * @return  A sorted list of pairs of orders.
+     */
+    public static ArrayList<Order> sortOrders(Order[] orders, MenuIndex.Validation[] validations, LngLat position){
+        ArrayList<Order> sortedOrders = new ArrayList<>(orders.length);
+        for (int index : sortedIndices(validations, position)){
+            sortedOrders.add(orders[index]);
+        }
+        return sortedOrders;
+    }
+
+    /**
+     * Returns the indices of a day's orders, sorted in ascending order by distance between a starting position and the
+     * restaurant each order is picked up from, with orders the same distance away kept in their original order.
+     * @param validations   The outcome of validating each order, which gives its restaurant, see MenuIndex.checkAll.
+     * @param position  Starting position of the drone.
+     * @return  The indices of the orders, nearest restaurant first and orders without a restaurant last.
+     */
+    public static int[] sortedIndices(MenuIndex.Validation[] validations, LngLat position){
+        double[] distances = new double[validations.length];
+        int[] indices = new int[validations.length];
+        for (int i = 0; i < validations.length; i++){
             // distance from the given position to the order's restaurant, note the coordinates won't be null as it would have caused a jackson error
-            double dist = position.distanceTo(new LngLat(order.getRestaurant(restaurants).longitude(),order.getRestaurant(restaurants).latitude()));
-            // create order number, distance pair
-            String[] orderInfo = {order.orderNo, Double.toString(dist)};
-            orderInfos.add(orderInfo);
+            // orders whose restaurant is unknown go last
+            Restaurant restaurant = validations[i].restaurant();
+            distances[i] = restaurant == null ? Double.POSITIVE_INFINITY : position.distanceTo(new LngLat(restaurant.longitude(), restaurant.latitude()));
+            indices[i] = i;
         }
-        // sort the pairs by distance
-        orderInfos.sort(Comparator.comparingDouble(o -> Double.parseDouble(o[1])));
-        // turn the pairs into a list of orders in the sorted arrangement
-        ArrayList<Order> sortedOrders = new ArrayList<>();
-        for (String[] each: orderInfos){
-            sortedOrders.add(getOrderFromOrderNo(each[0], orders));
+        // sort the order indices by distance, keeping orders the same distance away in their original order
+        sortByDistance(indices, distances, new int[validations.length], 0, validations.length);
+        return indices;
+    }
+
+    /**
+     * Merge sorts part of an array of indices by the distances they refer to, which keeps equal distances in order.
+     */
+    private static void sortByDistance(int[] indices, double[] distances, int[] buffer, int from, int to){
+        if (to - from < 2){
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortByDistance(indices, distances, buffer, from, middle);
+        sortByDistance(indices, distances, buffer, middle, to);
+        // the halves are already in order relative to each other
+        if (distances[indices[middle - 1]] <= distances[indices[middle]]){
+            return;
+        }
+        System.arraycopy(indices, from, buffer, from, to - from);
+        int left = from, right = middle;
+        for (int i = from; i < to; i++){
+            if (right >= to || (left < middle && distances[buffer[left]] <= distances[buffer[right]])){
+                indices[i] = buffer[left++];
+            } else {
+                indices[i] = buffer[right++];
+            }
         }
-        return sortedOrders;
     }
 
     /**
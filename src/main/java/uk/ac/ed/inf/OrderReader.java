@@ -0,0 +1,67 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Reads a JSON array of orders one order at a time with Jackson's streaming parser, handing each order on as soon as it
+ * has been read, so the whole array is never held in memory at once.
+ */
+public class OrderReader {
+    /**
+     * Receives each order as it is read.
+     */
+    public interface OrderHandler {
+        /**
+         * Handles one order.
+         * @param order The order read.
+         * @throws IOException  If handling the order fails, which stops the reading.
+         */
+        void accept(Order order) throws IOException;
+    }
+
+    /**
+     * Reads the orders from a URL, such as 'baseUrl/orders/date' on the REST server.
+     * @param url   URL of the JSON array of orders.
+     * @param handler   Receives each order in the order they appear in the array.
+     * @return  The number of orders read.
+     * @throws IOException  If the orders can't be fetched or are not a JSON array of orders.
+     */
+    public static int read(URL url, OrderHandler handler) throws IOException {
+        try (JsonParser parser = JsonCodecs.FACTORY.createParser(url)){
+            return read(parser, handler, url.toString());
+        }
+    }
+
+    /**
+     * Reads the orders from a stream, such as a snapshot of a day's orders.
+     * @param in    Stream of the JSON array of orders, which is closed once read.
+     * @param handler   Receives each order in the order they appear in the array.
+     * @return  The number of orders read.
+     * @throws IOException  If the orders can't be read or are not a JSON array of orders.
+     */
+    public static int read(InputStream in, OrderHandler handler) throws IOException {
+        try (JsonParser parser = JsonCodecs.FACTORY.createParser(in)){
+            return read(parser, handler, "the stream");
+        }
+    }
+
+    private static int read(JsonParser parser, OrderHandler handler, String source) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY){
+            throw new IOException("Expected an array of orders from " + source);
+        }
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT){
+            handler.accept(JsonCodecs.ORDER.read(parser));
+            count++;
+        }
+        if (parser.currentToken() != JsonToken.END_ARRAY){
+            throw new IOException("Expected an order from " + source);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.ed.inf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Chooses which orders to deliver so that as much of an objective as possible is achieved within the drone's move limit,
+ * rather than delivering orders first come first served until the moves run out. Every order to the same restaurant
+ * costs the same number of moves, so the orders are grouped by cost and the best orders of each group are chosen with a
+ * knapsack over the move limit, which takes time proportional to the move limit rather than the number of orders.
+ */
+public class OrderScheduler {
+    /**
+     * What the scheduler tries to maximise, as the value of delivering each order.
+     */
+    public interface Objective {
+        /** Delivers as many orders as possible. */
+        Objective COUNT = order -> 1;
+        /** Delivers the orders worth the most in total. */
+        Objective REVENUE = Order::priceTotalInPence;
+
+        /**
+         * Returns the value of delivering an order.
+         * @param order The order.
+         * @return  The value, which must not be negative.
+         */
+        long value(Order order);
+
+        /**
+         * Returns the objective with a given name.
+         * @param name  Name of the objective, count or revenue.
+         * @return  The objective, or null if the name is not recognised.
+         */
+        static Objective named(String name){
+            switch (name) {
+                case "count":
+                    return COUNT;
+                case "revenue":
+                    return REVENUE;
+                default:
+                    System.err.println("Unknown objective " + name);
+                    return null;
+            }
+        }
+    }
+
+    private final Objective objective;
+    private final int moveLimit;
+
+    /**
+     * Creates a scheduler.
+     * @param objective The objective to maximise.
+     * @param moveLimit Maximum number of moves the chosen orders can take in total.
+     */
+    public OrderScheduler(Objective objective, int moveLimit){
+        this.objective = objective;
+        this.moveLimit = moveLimit;
+    }
+
+    /**
+     * Chooses the orders to deliver. Where orders are equally good the earlier ones in the list are preferred.
+     * @param orders    The orders that could be delivered.
+     * @param costs     Number of moves needed to deliver each order, or -1 if it can't be delivered.
+     * @return  Boolean for each order, for whether it should be delivered.
+     */
+    public boolean[] select(List<Order> orders, int[] costs){
+        // group the orders by cost, each group ordered by value with earlier orders first among equal values
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < orders.size(); i++){
+            if (costs[i] >= 0 && costs[i] <= moveLimit){
+                groups.computeIfAbsent(costs[i], cost -> new ArrayList<>()).add(i);
+            }
+        }
+        List<Integer> groupCosts = new ArrayList<>(groups.keySet());
+        List<int[]> groupOrders = new ArrayList<>();
+        for (List<Integer> group : groups.values()){
+            group.sort((a, b) -> Long.compare(objective.value(orders.get(b)), objective.value(orders.get(a))));
+            groupOrders.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        // best[b] is the most value achievable with at most b moves using the groups so far,
+        // and taken[g][b] is how many orders of group g that needed
+        long[] best = new long[moveLimit + 1];
+        int[][] taken = new int[groupCosts.size()][];
+        for (int g = 0; g < groupCosts.size(); g++){
+            int cost = groupCosts.get(g);
+            int[] group = groupOrders.get(g);
+            int most = Math.min(group.length, moveLimit / cost);
+            long[] prefix = new long[most + 1];
+            for (int m = 0; m < most; m++){
+                prefix[m + 1] = prefix[m] + objective.value(orders.get(group[m]));
+            }
+            long[] next = new long[moveLimit + 1];
+            taken[g] = new int[moveLimit + 1];
+            for (int b = 0; b <= moveLimit; b++){
+                next[b] = best[b];
+                for (int m = 1; m <= most && m * cost <= b; m++){
+                    long value = best[b - m * cost] + prefix[m];
+                    if (value > next[b]){
+                        next[b] = value;
+                        taken[g][b] = m;
+                    }
+                }
+            }
+            best = next;
+        }
+        // walk back through the groups to find how many orders of each were taken
+        boolean[] selected = new boolean[orders.size()];
+        int moves = moveLimit;
+        for (int g = groupCosts.size() - 1; g >= 0; g--){
+            int m = taken[g][moves];
+            for (int i = 0; i < m; i++){
+                selected[groupOrders.get(g)[i]] = true;
+            }
+            moves -= m * groupCosts.get(g);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,14 @@
+package uk.ac.ed.inf;
+
+/**
+ * Plans the moves the drone makes to get from one position to another while avoiding the No-Fly zones.
+ */
+public interface PathPlanner {
+    /**
+     * Plans the moves of the drone from a starting position until it is close to a goal.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    float[] planMoves(LngLat start, LngLat goal);
+}
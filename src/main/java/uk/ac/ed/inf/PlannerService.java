@@ -0,0 +1,362 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the planner as a long-lived service on a local port, so planning a day doesn't pay for starting a new JVM,
+ * loading the classes, fetching the restaurants, No-Fly zones and central area again or warming up the JIT. The REST
+ * data of each base URL and the planner built from it are kept between requests, and days are planned with the flags
+ * the service was started with and write the same result files as App. Requests are served concurrently, and two
+ * requests for the same date wait for each other as they write the same files. A day can also be planned as its orders
+ * arrive, with an IncrementalPlanner kept for each base URL and date.
+ * <p>
+ * Endpoints, all answering with JSON:
+ * <ul>
+ *     <li>POST /plan?date=yyyy-mm-dd[&amp;url=base URL] plans a day, using the default base URL if none is given.</li>
+ *     <li>POST /orders?date=yyyy-mm-dd[&amp;url=base URL] adds the JSON array of orders in the body to the day being
+ *     planned as its orders arrive, or fetches the day's orders again if the body is empty, re-plans only the new
+ *     orders and the trips not yet flown and writes the day's files. The response gives the time taken to re-plan
+ *     and the total time including writing the files.</li>
+ *     <li>POST /flown?date=yyyy-mm-dd&amp;moves=n[&amp;url=base URL] records that the drone has flown the first n moves
+ *     of that day, committing the trip it is on.</li>
+ *     <li>POST /reload forgets the REST data, so it is fetched again (or revalidated against the snapshots).</li>
+ *     <li>GET /metrics returns the summary of Metrics, when the service was started with --metrics.</li>
+ *     <li>GET /status returns the base URLs currently loaded.</li>
+ * </ul>
+ */
+public class PlannerService implements Closeable {
+    private final String defaultBaseUrl;
+    private final RunOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // the REST data and planner of each base URL, loaded by the first request which uses it
+    private final Map<String, FutureTask<Context>> contexts = new ConcurrentHashMap<>();
+    // the days being planned as their orders arrive, by base URL and date
+    private final Map<String, IncrementalPlanner> days = new ConcurrentHashMap<>();
+    // one lock per date, as planning a date writes its result files
+    private final Map<String, Object> dateLocks = new ConcurrentHashMap<>();
+
+    /**
+     * The REST data of one base URL and the planner built from it, which is shared by every request to that URL. Each
+     * URL has its own menu index, No-Fly zones and central area, passed to the planners explicitly, so requests for
+     * different URLs never share or replace each other's.
+     * @param source    The source of the REST data and orders.
+     * @param index The index of the menus of the restaurants pizzas can be ordered from.
+     * @param noFlyZones    The compiled No-Fly zones.
+     * @param centralArea   The central area.
+     * @param planner   The planner used to find the paths to the restaurants.
+     */
+    private record Context(RestDataSource source, MenuIndex index, NoFlyZoneSet noFlyZones, CentralArea centralArea, PathPlanner planner) {}
+
+    /**
+     * Starts the service.
+     * @param port  Port to listen on, or 0 to use any free port.
+     * @param defaultBaseUrl    Base URL of the REST server used by requests which don't give one, or null to require one.
+     * @param options   The command-line flags every day is planned with, and --threads for the number of requests
+     *                  served at the same time.
+     * @throws IOException  If the port can't be listened on.
+     */
+    public PlannerService(int port, String defaultBaseUrl, RunOptions options) throws IOException {
+        this.defaultBaseUrl = defaultBaseUrl == null ? null : withSlash(defaultBaseUrl);
+        this.options = options;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, options.getInt("threads", Runtime.getRuntime().availableProcessors())));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/plan", exchange -> handle(exchange, "POST", (query, body) -> plan(query)));
+        server.createContext("/orders", exchange -> handle(exchange, "POST", this::addOrders));
+        server.createContext("/flown", exchange -> handle(exchange, "POST", (query, body) -> flown(query)));
+        server.createContext("/reload", exchange -> handle(exchange, "POST", (query, body) -> {
+            contexts.clear();
+            return Map.of("reloaded", true);
+        }));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", (query, body) -> metrics()));
+        server.createContext("/status", exchange -> handle(exchange, "GET", (query, body) -> Map.of("loaded", contexts.keySet())));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the URL the service is listening on, ending with a /.
+     * @return  The URL.
+     */
+    public String getUrl(){
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Loads the REST data of a base URL before any request needs it.
+     * @param baseUrlStr    The base URL.
+     * @throws IOException  If the data can't be fetched.
+     */
+    public void preload(String baseUrlStr) throws IOException {
+        context(withSlash(baseUrlStr));
+    }
+
+    /**
+     * Stops the service, waiting at most a second for requests in progress.
+     */
+    @Override
+    public void close(){
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Plans one day.
+     * @return  The response: the date, whether it had any orders and how long planning took.
+     */
+    private Map<String, Object> plan(Map<String, String> query) throws IOException {
+        String date = date(query);
+        String baseUrlStr = baseUrl(query);
+        Context context = context(baseUrlStr);
+        long start = System.nanoTime();
+        boolean planned;
+        synchronized (dateLocks.computeIfAbsent(date, d -> new Object())) {
+            planned = App.runDay(date, context.source(), context.index(), context.planner(), options);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("date", date);
+        response.put("url", baseUrlStr);
+        response.put("planned", planned);
+        response.put("millis", (System.nanoTime() - start) / 1_000_000);
+        return response;
+    }
+
+    /**
+     * Adds orders to a day being planned as they arrive, starting the day if this is its first request.
+     * @return  The response: the number of new orders and the state of the day's plan.
+     */
+    private Map<String, Object> addOrders(Map<String, String> query, InputStream body) throws IOException {
+        String date = date(query);
+        String baseUrlStr = baseUrl(query);
+        Context context = context(baseUrlStr);
+        byte[] orders = body.readAllBytes();
+        long start = System.nanoTime();
+        synchronized (dateLocks.computeIfAbsent(date, d -> new Object())) {
+            IncrementalPlanner day = days.computeIfAbsent(baseUrlStr + " " + date,
+                    key -> new IncrementalPlanner(context.index(), context.planner()));
+            int added = orders.length == 0 ? day.poll(context.source(), date) : day.addOrders(new ByteArrayInputStream(orders));
+            long planned = System.nanoTime();
+            if (added > 0) {
+                day.write(date, options);
+            }
+            Map<String, Object> response = dayStatus(date, baseUrlStr, day);
+            response.put("newOrders", added);
+            response.put("planMillis", (planned - start) / 1_000_000.0);
+            response.put("millis", (System.nanoTime() - start) / 1_000_000.0);
+            return response;
+        }
+    }
+
+    /**
+     * Records how far the drone has flown on a day being planned as its orders arrive.
+     * @return  The response: the state of the day's plan.
+     */
+    private Map<String, Object> flown(Map<String, String> query){
+        String date = date(query);
+        String baseUrlStr = baseUrl(query);
+        IncrementalPlanner day = days.get(baseUrlStr + " " + date);
+        if (day == null) {
+            throw new IllegalArgumentException("No orders have been added for " + date);
+        }
+        try {
+            day.markFlown(Integer.parseInt(query.getOrDefault("moves", "")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid moves " + query.get("moves"));
+        }
+        return dayStatus(date, baseUrlStr, day);
+    }
+
+    private static Map<String, Object> dayStatus(String date, String baseUrlStr, IncrementalPlanner day){
+        int delivered = 0;
+        Delivery[] deliveries = day.getDeliveries();
+        for (Delivery delivery : deliveries) {
+            if (delivery.getOutcome().equals(OrderOutcome.Delivered.toString())) {
+                delivered++;
+            }
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("date", date);
+        response.put("url", baseUrlStr);
+        response.put("orders", deliveries.length);
+        response.put("delivered", delivered);
+        response.put("moves", day.getFlightpath().size());
+        response.put("committedMoves", day.getCommittedMoves());
+        return response;
+    }
+
+    private static String date(Map<String, String> query){
+        String date = query.get("date");
+        try {
+            LocalDate.parse(date == null ? "" : date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date " + date + ", please use yyyy-mm-dd");
+        }
+        return date;
+    }
+
+    private String baseUrl(Map<String, String> query){
+        String baseUrlStr = query.containsKey("url") ? withSlash(query.get("url")) : defaultBaseUrl;
+        if (baseUrlStr == null) {
+            throw new IllegalArgumentException("No url given and the service has no default");
+        }
+        return baseUrlStr;
+    }
+
+    /**
+     * Returns the context of a base URL, loading it if this is the first request to use it. Other requests for the
+     * same URL wait while it loads, and a failed load is tried again by the next request. The load runs on the thread
+     * of the request which started it rather than inside the map, so loading one URL never holds up another.
+     */
+    private Context context(String baseUrlStr) throws IOException {
+        FutureTask<Context> load = new FutureTask<>(() -> load(baseUrlStr));
+        FutureTask<Context> existing = contexts.putIfAbsent(baseUrlStr, load);
+        if (existing == null) {
+            load.run();
+            existing = load;
+        }
+        try {
+            return existing.get();
+        } catch (ExecutionException e) {
+            contexts.remove(baseUrlStr, existing);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + baseUrlStr, e);
+        }
+    }
+
+    /**
+     * Fetches the REST data of a base URL and builds its planner.
+     */
+    private Context load(String baseUrlStr) throws IOException {
+        RestDataSource source = App.dataSource(baseUrlStr, options);
+        MenuIndex index = new MenuIndex(source.getRestaurants());
+        NoFlyZoneSet noFlyZones = new NoFlyZoneSet(source.getNoFlyZones());
+        CentralArea centralArea = source.getCentralArea();
+        return new Context(source, index, noFlyZones, centralArea, App.makeCachedPlanner(options, index.getRestaurants(), noFlyZones, centralArea));
+    }
+
+    private Map<String, Object> metrics() throws IOException {
+        if (!Metrics.isEnabled()) {
+            throw new IllegalArgumentException("The service was not started with --metrics");
+        }
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        Metrics.writeSummary(summary);
+        return mapper.readValue(summary.toByteArray(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * Answers a request of one endpoint.
+     */
+    private interface Handler {
+        Map<String, Object> handle(Map<String, String> query, InputStream body) throws IOException;
+    }
+
+    /**
+     * Answers a request with the JSON response of a handler, 400 if the request is invalid, 405 for the wrong method
+     * and 500 if it fails.
+     */
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            int status;
+            Map<String, Object> response;
+            if (!exchange.getRequestMethod().equals(method)) {
+                status = 405;
+                response = Map.of("error", "Please use " + method);
+            } else {
+                try {
+                    response = handler.handle(query(exchange.getRequestURI().getRawQuery()), exchange.getRequestBody());
+                    status = 200;
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                    response = Map.of("error", e.getMessage());
+                } catch (IOException | RuntimeException e) {
+                    status = 500;
+                    response = Map.of("error", String.valueOf(e));
+                }
+            }
+            byte[] body = mapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery){
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String withSlash(String baseUrlStr){
+        return baseUrlStr.endsWith("/") ? baseUrlStr : baseUrlStr + "/";
+    }
+
+    /**
+     * Runs the service until it is killed.
+     * @param args  The port, then optionally the default base URL, then the flags days are planned with.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Invalid arguments, please input the port and then optionally the url");
+            return;
+        }
+        String baseUrlStr = args.length > 1 && !args[1].startsWith("--") ? args[1] : null;
+        RunOptions options = new RunOptions(args, baseUrlStr == null ? 1 : 2);
+        Metrics.setEnabled(options.has("metrics"));
+        PlannerService service = null;
+        try {
+            service = new PlannerService(Integer.parseInt(args[0]), baseUrlStr, options);
+            if (baseUrlStr != null) {
+                // load the default data up front, so the first request only has to plan
+                service.preload(baseUrlStr);
+            }
+            System.out.println("Planning days at " + service.getUrl() + "plan?date=yyyy-mm-dd");
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid arguments, the port must be a number");
+        } catch (IOException e) {
+            System.err.println("I/O Exception, please check connection and input data");
+            if (service != null) {
+                service.close();
+            }
+        }
+    }
+}
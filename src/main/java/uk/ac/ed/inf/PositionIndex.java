@@ -0,0 +1,176 @@
+package uk.ac.ed.inf;
+
+import java.util.Arrays;
+
+/**
+ * Set of positions that can quickly answer whether a point is close to any position in the set.
+ * Positions are snapped to square grid cells half a move wide and the cell is packed into a long, which is stored in a
+ * primitive open-addressing hash table. Looking up a point only checks the cells within one move of it, so the check
+ * takes constant time no matter how many positions are in the set.
+ */
+public class PositionIndex {
+    /** Width of a grid cell in degrees, half the length of a move. */
+    public static final double CELL_SIZE = 0.00015 / 2;
+    private static final double CLOSE_DISTANCE = 0.00015;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys = new long[64];
+    private double[] longitudes = new double[64];
+    private double[] latitudes = new double[64];
+    private int size = 0;
+
+    /**
+     * Creates an empty index.
+     */
+    public PositionIndex(){
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns the number of positions in the index.
+     * @return  Number of positions added.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Adds a position to the index.
+     * @param position  The position to add.
+     */
+    public void add(LngLat position){
+        add(position.longitude(), position.latitude());
+    }
+
+    /**
+     * Adds a position to the index.
+     * @param longitude Longitude of the position.
+     * @param latitude  Latitude of the position.
+     */
+    public void add(double longitude, double latitude){
+        if (2 * (size + 1) > keys.length){
+            resize();
+        }
+        insert(cellKey(cell(longitude), cell(latitude)), longitude, latitude);
+        size++;
+    }
+
+    /**
+     * Adds a position to the index only if no other position lies in the same grid cell.
+     * @param longitude Longitude of the position.
+     * @param latitude  Latitude of the position.
+     * @return  Boolean for whether the position was added.
+     */
+    public boolean addToEmptyCell(double longitude, double latitude){
+        if (containsCell(longitude, latitude)){
+            return false;
+        }
+        add(longitude, latitude);
+        return true;
+    }
+
+    /**
+     * Returns whether a position in the index lies in the same grid cell as a point.
+     * @param longitude Longitude of the point.
+     * @param latitude  Latitude of the point.
+     * @return  Boolean for whether the point's cell is occupied.
+     */
+    public boolean containsCell(double longitude, double latitude){
+        long key = cellKey(cell(longitude), cell(latitude));
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1)){
+            if (keys[slot] == key){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether any position in the index is close to a point, with the same meaning as LngLat.closeTo.
+     * @param point The point being checked.
+     * @return  Boolean for whether the point is close to a position in the index.
+     */
+    public boolean containsCloseTo(LngLat point){
+        return containsCloseTo(point.longitude(), point.latitude());
+    }
+
+    /**
+     * Returns whether any position in the index is strictly less than 0.00015 degrees from a point.
+     * @param longitude Longitude of the point.
+     * @param latitude  Latitude of the point.
+     * @return  Boolean for whether the point is close to a position in the index.
+     */
+    public boolean containsCloseTo(double longitude, double latitude){
+        if (size == 0){
+            return false;
+        }
+        // only the cells overlapping the square around the point can hold close positions
+        long minX = cell(longitude - CLOSE_DISTANCE);
+        long maxX = cell(longitude + CLOSE_DISTANCE);
+        long minY = cell(latitude - CLOSE_DISTANCE);
+        long maxY = cell(latitude + CLOSE_DISTANCE);
+        for (long x = minX; x <= maxX; x++){
+            for (long y = minY; y <= maxY; y++){
+                long key = cellKey(x, y);
+                // several positions may share a cell, so check every entry with the key in the probe sequence
+                for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1)){
+                    if (keys[slot] == key && Math.sqrt(Math.pow(longitudes[slot] - longitude, 2) + Math.pow(latitudes[slot] - latitude, 2)) < CLOSE_DISTANCE){
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all positions from the index, keeping the allocated table.
+     */
+    public void clear(){
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private static long cell(double coordinate){
+        return (long) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long cellKey(long x, long y){
+        return (x << 32) | (y & 0xffffffffL);
+    }
+
+    private int slot(long key){
+        // murmur3 finaliser, so neighbouring cells are spread across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & (keys.length - 1);
+    }
+
+    private void insert(long key, double longitude, double latitude){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        longitudes[slot] = longitude;
+        latitudes[slot] = latitude;
+    }
+
+    private void resize(){
+        long[] oldKeys = keys;
+        double[] oldLongitudes = longitudes;
+        double[] oldLatitudes = latitudes;
+        keys = new long[oldKeys.length * 2];
+        longitudes = new double[oldKeys.length * 2];
+        latitudes = new double[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != EMPTY){
+                insert(oldKeys[i], oldLongitudes[i], oldLatitudes[i]);
+            }
+        }
+    }
+}
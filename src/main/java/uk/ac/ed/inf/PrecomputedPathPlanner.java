@@ -0,0 +1,71 @@
+package uk.ac.ed.inf;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Path planner which plans the paths from one start position to a set of goals concurrently up front, then answers
+ * requests for those paths without planning. Any other path is passed on to the wrapped planner. As every trip of the
+ * drone starts from the same position, this lets all the paths of a day be planned in parallel before the moves are
+ * assembled into a flightpath one order at a time.
+ */
+public class PrecomputedPathPlanner implements PathPlanner {
+    // stored for goals that can't be reached, as the map can't hold null
+    private static final float[] NO_PATH = new float[0];
+
+    private final PathPlanner planner;
+    private final LngLat start;
+    private final Map<LngLat, float[]> paths = new ConcurrentHashMap<>();
+
+    /**
+     * Plans the paths from the start to each goal one after another.
+     * @param planner   The planner used to find the paths.
+     * @param start     The position every precomputed path starts from.
+     * @param goals     The goals paths are planned to, duplicates are only planned once.
+     */
+    public PrecomputedPathPlanner(PathPlanner planner, LngLat start, Collection<LngLat> goals){
+        this.planner = planner;
+        this.start = start;
+        for (LngLat goal : new LinkedHashSet<>(goals)){
+            plan(goal);
+        }
+    }
+
+    /**
+     * Plans the paths from the start to each goal on a pool of threads, waiting until they are all planned.
+     * @param planner   The planner used to find the paths, which must be safe to use from several threads.
+     * @param start     The position every precomputed path starts from.
+     * @param goals     The goals paths are planned to, duplicates are only planned once.
+     * @param pool      The pool the paths are planned on.
+     */
+    public PrecomputedPathPlanner(PathPlanner planner, LngLat start, Collection<LngLat> goals, ForkJoinPool pool){
+        this.planner = planner;
+        this.start = start;
+        List<LngLat> distinct = List.copyOf(new LinkedHashSet<>(goals));
+        pool.submit(() -> distinct.parallelStream().forEach(this::plan)).join();
+    }
+
+    /**
+     * Returns the precomputed path if there is one, otherwise plans the path with the wrapped planner.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        float[] moves = this.start.equals(start) ? paths.get(goal) : null;
+        if (moves == null){
+            return planner.planMoves(start, goal);
+        }
+        return moves == NO_PATH ? null : moves;
+    }
+
+    private void plan(LngLat goal){
+        float[] moves = planner.planMoves(start, goal);
+        paths.put(goal, moves == null ? NO_PATH : moves);
+    }
+}
@@ -0,0 +1,260 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetches the data the program needs from the REST server, each resource at most once per run. Responses can be kept in
+ * a snapshot directory, with the ETag and Last-Modified headers the server sent, so the next run only asks the server
+ * whether they have changed and reuses the snapshot if not. In offline mode the server is not contacted at all and
+ * everything is read from the snapshot, which lets days be replayed without the server. Each base URL keeps its
+ * snapshots in its own subdirectory, so servers sharing a snapshot directory never mix their responses or ETags.
+ */
+public class RestDataSource {
+    // one lock per snapshot file, shared by every data source in the run as several can use the same directory
+    private static final Map<Path, Object> SNAPSHOT_LOCKS = new ConcurrentHashMap<>();
+
+    private final String baseUrlStr;
+    private final Path snapshotDir;
+    private final boolean offline;
+    // parsed resources already fetched in this run
+    private final Map<String, Object> fetched = new ConcurrentHashMap<>();
+    // one lock per resource, so different resources can be fetched at the same time but each is only fetched once
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a data source.
+     * @param baseUrlStr    The base of the URL through which the REST server is accessed, ending with a /.
+     * @param snapshotDir   Directory responses are kept in, under a subdirectory for the base URL, or null to not
+     *                      keep them.
+     * @param offline   Whether to read everything from the snapshot directory instead of the server.
+     */
+    public RestDataSource(String baseUrlStr, Path snapshotDir, boolean offline){
+        this.baseUrlStr = baseUrlStr;
+        this.snapshotDir = snapshotDir == null ? null : snapshotDir.resolve(urlDirectory(baseUrlStr));
+        this.offline = offline;
+    }
+
+    /**
+     * Returns the directory the snapshots of this data source's base URL are kept in.
+     * @return  The subdirectory of the snapshot directory for the base URL, or null if snapshots are not kept.
+     */
+    public Path getSnapshotDir(){
+        return snapshotDir;
+    }
+
+    /**
+     * Returns the restaurants pizzas can be ordered from.
+     * @return  Array of Restaurant objects.
+     * @throws IOException  If the restaurants can't be fetched or parsed.
+     */
+    public Restaurant[] getRestaurants() throws IOException {
+        return get("restaurants/", Restaurant[].class);
+    }
+
+    /**
+     * Returns the No-Fly zones.
+     * @return  A MultiPolygon object of the No-Fly zones.
+     * @throws IOException  If the No-Fly zones can't be fetched or parsed.
+     */
+    public MultiPolygon getNoFlyZones() throws IOException {
+        synchronized (lock("noFlyZones/multipolygon")){
+            // the same MultiPolygon is returned every time, so its compiled form is shared
+            MultiPolygon noFlyZones = (MultiPolygon) fetched.get("noFlyZones/multipolygon");
+            if (noFlyZones == null){
+                noFlyZones = NoFlyZone.toMultiPolygon(get("noFlyZones/", NoFlyZone[].class));
+                fetched.put("noFlyZones/multipolygon", noFlyZones);
+            }
+            return noFlyZones;
+        }
+    }
+
+    /**
+     * Returns the central area, loading the CentralArea singleton with it if it is the first one loaded so the singleton
+     * does not fetch it again. If another data source already loaded a different central area this one gets its own
+     * CentralArea, which has to be passed to the planners rather than found through its URL.
+     * @return  The central area, the same object every time.
+     * @throws IOException  If the central area can't be fetched or parsed.
+     */
+    public CentralArea getCentralArea() throws IOException {
+        synchronized (lock("centralArea/instance")){
+            CentralArea centralArea = (CentralArea) fetched.get("centralArea/instance");
+            if (centralArea == null){
+                LngLat[] points = get("centralArea/", LngLat[].class);
+                CentralArea loaded = CentralArea.load(points);
+                centralArea = Arrays.equals(points, loaded.getPoints()) ? loaded : CentralArea.fromPoints(points);
+                fetched.put("centralArea/instance", centralArea);
+            }
+            return centralArea;
+        }
+    }
+
+    /**
+     * Returns the URL the central area is fetched from, which identifies it to the classes that take a URL.
+     * @return  URL of the central area.
+     * @throws IOException  If the URL is malformed.
+     */
+    public URL getCentralURL() throws IOException {
+        return new URL(baseUrlStr + "centralArea/");
+    }
+
+    /**
+     * Opens the orders of a day to be read one at a time. When keeping snapshots the orders are saved to the snapshot
+     * directory as they are downloaded, and read back from there.
+     * @param date  The date of the orders.
+     * @return  A stream of the JSON array of orders, which the caller must close.
+     * @throws IOException  If the orders can't be fetched.
+     */
+    public InputStream openOrders(String date) throws IOException {
+        Metrics.FetchEvent event = new Metrics.FetchEvent("orders/" + date);
+        InputStream orders = ordersStream(date);
+        event.finish();
+        return orders;
+    }
+
+    private InputStream ordersStream(String date) throws IOException {
+        String resource = "orders/" + date;
+        if (offline || snapshotDir != null){
+            return Files.newInputStream(refresh(resource));
+        }
+        return new URL(baseUrlStr + resource).openStream();
+    }
+
+    /**
+     * Returns the orders of a day.
+     * @param date  The date of the orders.
+     * @return  Array of Order objects.
+     * @throws IOException  If the orders can't be fetched or parsed.
+     */
+    public Order[] getOrders(String date) throws IOException {
+        Metrics.FetchEvent event = new Metrics.FetchEvent("orders/" + date);
+        try (InputStream orders = ordersStream(date)){
+            return JsonCodecs.readArray(orders, Order.class);
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Returns a resource, fetching and parsing it the first time it is asked for.
+     * @param type  Class of the array the resource is parsed into.
+     */
+    private <T> T get(String resource, Class<T> type) throws IOException {
+        synchronized (lock(resource)){
+            Object value = fetched.get(resource);
+            if (value == null){
+                Metrics.FetchEvent event = new Metrics.FetchEvent(resource);
+                try {
+                    if (offline || snapshotDir != null){
+                        value = JsonCodecs.readArray(refresh(resource), type.getComponentType());
+                    } else {
+                        value = JsonCodecs.readArray(new URL(baseUrlStr + resource), type.getComponentType());
+                    }
+                } finally {
+                    event.finish();
+                }
+                fetched.put(resource, value);
+            }
+            return type.cast(value);
+        }
+    }
+
+    private Object lock(String resource){
+        return locks.computeIfAbsent(resource, r -> new Object());
+    }
+
+    /**
+     * Returns the name of the subdirectory the snapshots of a base URL are kept in, made from a hash of the URL.
+     */
+    private static String urlDirectory(String baseUrlStr){
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(baseUrlStr.getBytes(StandardCharsets.UTF_8));
+            return String.format("%016x", ByteBuffer.wrap(digest).getLong());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Makes sure the snapshot of a resource is up to date, downloading it if it is missing or has changed on the server.
+     * @return  The snapshot file.
+     */
+    private Path refresh(String resource) throws IOException {
+        String name = resource.replaceAll("/+$", "").replace('/', '_');
+        Path file = snapshotDir.resolve(name + ".json");
+        synchronized (SNAPSHOT_LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), f -> new Object())){
+            return refreshSnapshot(resource, name, file);
+        }
+    }
+
+    private Path refreshSnapshot(String resource, String name, Path file) throws IOException {
+        Path metaFile = snapshotDir.resolve(name + ".meta");
+        if (offline){
+            if (!Files.exists(file)){
+                throw new IOException("No snapshot of " + resource + " in " + snapshotDir);
+            }
+            return file;
+        }
+        Properties meta = new Properties();
+        if (Files.exists(file) && Files.exists(metaFile)){
+            try (Reader reader = Files.newBufferedReader(metaFile)){
+                meta.load(reader);
+            }
+        }
+        URLConnection connection = new URL(baseUrlStr + resource).openConnection();
+        if (connection instanceof HttpURLConnection){
+            HttpURLConnection http = (HttpURLConnection) connection;
+            // ask the server to only send the resource if it has changed since the snapshot
+            if (meta.getProperty("etag") != null){
+                http.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+            }
+            if (meta.getProperty("lastModified") != null){
+                http.setRequestProperty("If-Modified-Since", meta.getProperty("lastModified"));
+            }
+            if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED){
+                http.disconnect();
+                return file;
+            }
+        }
+        Files.createDirectories(snapshotDir);
+        // write to a temporary file first, so a half-downloaded snapshot is never used
+        Path temp = Files.createTempFile(snapshotDir, name, ".tmp");
+        try (InputStream in = connection.getInputStream()){
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Properties updated = new Properties();
+        if (connection.getHeaderField("ETag") != null){
+            updated.setProperty("etag", connection.getHeaderField("ETag"));
+        }
+        if (connection.getHeaderField("Last-Modified") != null){
+            updated.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+        }
+        try (Writer writer = Files.newBufferedWriter(metaFile)){
+            updated.store(writer, baseUrlStr + resource);
+        }
+        return file;
+    }
+}
@@ -1,7 +1,5 @@
 package uk.ac.ed.inf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
 import java.net.URL;
 
@@ -26,7 +24,7 @@ public record Restaurant(String name, double longitude, double latitude, Item[]
             // create a new url with restaurants/ added to the base url
             URL restaurantAddress = new URL(serverBaseAddress + "restaurants/");
             // get JSON from REST-request and parse this into an array of Restaurant objects
-            return new ObjectMapper().readValue(restaurantAddress, Restaurant[].class);
+            return JsonCodecs.readArray(restaurantAddress, Restaurant.class);
         } catch (IOException e) {
             e.printStackTrace();
         }
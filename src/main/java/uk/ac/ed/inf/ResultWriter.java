@@ -0,0 +1,214 @@
+package uk.ac.ed.inf;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mapbox.geojson.utils.GeoJsonUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the deliveries, flightpath and drone files with Jackson's streaming generator, one delivery, move or
+ * coordinate at a time straight from the plan, so no list of points, mapbox FeatureCollection or string of the whole
+ * file is ever built. The files are the same as mapbox and an ObjectMapper would write, and can optionally be gzip
+ * compressed, in which case '.gz' is added to their names.
+ */
+public class ResultWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Returns the path of a file in the resultfiles directory.
+     * @param name  Name of the file, such as 'flightpath-2023-01-01.json'.
+     * @param gzip  Whether the file is gzip compressed.
+     * @return  The path of the file.
+     */
+    public static Path resultFile(String name, boolean gzip){
+        return Paths.get("resultfiles", gzip ? name + ".gz" : name);
+    }
+
+    /**
+     * Creates the directory a result file is written to if it doesn't exist yet, such as resultfiles on the first run.
+     * @param file  The file about to be written.
+     * @throws IOException  If the directory can't be created.
+     */
+    static void createParent(Path file) throws IOException {
+        if (file.getParent() != null){
+            Files.createDirectories(file.getParent());
+        }
+    }
+
+    /**
+     * Opens a buffered JSON generator writing to a file, which closes the file when it is closed.
+     * @param file  The file to write, which is replaced if it exists. Its directory is created if it is missing.
+     * @param gzip  Whether to gzip compress the file.
+     * @return  The generator.
+     * @throws IOException  If the file can't be opened.
+     */
+    public static JsonGenerator open(Path file, boolean gzip) throws IOException {
+        createParent(file);
+        OutputStream out = Files.newOutputStream(file);
+        out = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : new BufferedOutputStream(out, BUFFER_SIZE);
+        // generators are cheap to create from the one shared factory, unlike a new ObjectMapper per file
+        return JsonCodecs.FACTORY.createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    /**
+     * Writes the files of a day at the same time: the deliveries file, and a flightpath and drone file for each drone.
+     * A single drone's files are named by the date, like 'flightpath-date.json', and a fleet's are numbered from 1,
+     * like 'flightpath-date-drone1.json'.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param deliveries    The delivery information for each of the orders, or null if it has already been written.
+     * @param flightpaths   The flightpath of each drone.
+     * @param gzip  Whether to gzip compress the files.
+     * @throws IOException  If any of the files can't be written.
+     */
+    public static void writeDay(String date, Delivery[] deliveries, List<List<DroneMove>> flightpaths, boolean gzip) throws IOException {
+        writeDay(date, deliveries, flightpaths, gzip, false);
+    }
+
+    /**
+     * Writes the files of a day at the same time, optionally also writing each flightpath in the binary form of
+     * BinaryFlightpath, named like 'flightpath-date.bin'. The binary files are never compressed, so they can be mapped.
+     * @param date  Date all the pizzas have been ordered on.
+     * @param deliveries    The delivery information for each of the orders, or null if it has already been written.
+     * @param flightpaths   The flightpath of each drone.
+     * @param gzip  Whether to gzip compress the JSON files.
+     * @param binary    Whether to also write the binary flightpath files.
+     * @throws IOException  If any of the files can't be written.
+     */
+    public static void writeDay(String date, Delivery[] deliveries, List<List<DroneMove>> flightpaths, boolean gzip, boolean binary) throws IOException {
+        List<Callable<Void>> writes = new ArrayList<>();
+        if (deliveries != null) {
+            writes.add(write(resultFile("deliveries-" + date + ".json", gzip), file -> writeDeliveries(file, deliveries, gzip)));
+        }
+        for (int drone = 0; drone < flightpaths.size(); drone++) {
+            List<DroneMove> flightpath = flightpaths.get(drone);
+            String name = flightpaths.size() == 1 ? date : date + "-drone" + (drone + 1);
+            writes.add(write(resultFile("flightpath-" + name + ".json", gzip), file -> writeFlightpath(file, flightpath, gzip)));
+            writes.add(write(resultFile("drone-" + name + ".geojson", gzip), file -> writeDrone(file, flightpath, gzip)));
+            if (binary) {
+                writes.add(write(resultFile("flightpath-" + name + ".bin", false), file -> BinaryFlightpath.write(file, flightpath)));
+            }
+        }
+        try {
+            for (Future<Void> write : ForkJoinPool.commonPool().invokeAll(writes)) {
+                write.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the files of " + date);
+        }
+    }
+
+    /**
+     * Writes one file.
+     */
+    private interface FileWrite {
+        void write(Path file) throws IOException;
+    }
+
+    /**
+     * Makes a task writing one file, recorded as a WriteEvent.
+     */
+    private static Callable<Void> write(Path file, FileWrite write){
+        return () -> {
+            Metrics.WriteEvent event = new Metrics.WriteEvent(file);
+            try {
+                write.write(file);
+            } finally {
+                event.finish();
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Writes a deliveries file.
+     * @param file  The file to write.
+     * @param deliveries    The delivery information for each of the orders.
+     * @param gzip  Whether to gzip compress the file.
+     * @throws IOException  If the file can't be written.
+     */
+    public static void writeDeliveries(Path file, Delivery[] deliveries, boolean gzip) throws IOException {
+        try (DeliveriesWriter writer = new DeliveriesWriter(file, gzip)) {
+            for (Delivery delivery : deliveries) {
+                writer.write(delivery);
+            }
+        }
+    }
+
+    /**
+     * Writes a flightpath file, with the moves in the format of DroneMove.
+     * @param file  The file to write.
+     * @param flightpath    The flightpath the drone took.
+     * @param gzip  Whether to gzip compress the file.
+     * @throws IOException  If the file can't be written.
+     */
+    public static void writeFlightpath(Path file, List<DroneMove> flightpath, boolean gzip) throws IOException {
+        try (JsonGenerator generator = open(file, gzip)) {
+            generator.writeStartArray();
+            for (DroneMove move : flightpath) {
+                JsonCodecs.DRONE_MOVE.write(generator, move);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Writes a drone file, a GeoJSON FeatureCollection holding the points the drone moves through as one LineString.
+     * A drone which never moved gets a single Feature with an empty LineString, as mapbox writes for no points.
+     * @param file  The file to write.
+     * @param flightpath    The flightpath the drone took.
+     * @param gzip  Whether to gzip compress the file.
+     * @throws IOException  If the file can't be written.
+     */
+    public static void writeDrone(Path file, List<DroneMove> flightpath, boolean gzip) throws IOException {
+        try (JsonGenerator generator = open(file, gzip)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeArrayFieldStart("features");
+            generator.writeStartObject();
+            generator.writeStringField("type", "Feature");
+            generator.writeObjectFieldStart("geometry");
+            generator.writeStringField("type", "LineString");
+            generator.writeArrayFieldStart("coordinates");
+            for (DroneMove move : flightpath) {
+                writeCoordinate(generator, move.getFromLongitude(), move.getFromLatitude());
+            }
+            if (!flightpath.isEmpty()) {
+                // add the final position of the drone
+                DroneMove last = flightpath.get(flightpath.size() - 1);
+                writeCoordinate(generator, last.getToLongitude(), last.getToLatitude());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("properties");
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeCoordinate(JsonGenerator generator, double longitude, double latitude) throws IOException {
+        // rounded to 7 decimal places, as mapbox does
+        generator.writeStartArray();
+        generator.writeNumber(GeoJsonUtils.trim(longitude));
+        generator.writeNumber(GeoJsonUtils.trim(latitude));
+        generator.writeEndArray();
+    }
+}
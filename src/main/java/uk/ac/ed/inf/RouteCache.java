@@ -0,0 +1,120 @@
+package uk.ac.ed.inf;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two tier store of planned routes: a bounded in-memory map that evicts the least recently used route, backed by a
+ * directory on disk with one small binary file per route, which keeps routes between runs of the program.
+ * Routes are stored as the indices of their compass directions.
+ */
+public class RouteCache {
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, byte[]> memory;
+    private final Path directory;
+
+    /**
+     * Creates a route cache.
+     * @param capacity  Maximum number of routes kept in memory.
+     * @param directory Directory routes are persisted to, or null to only keep routes in memory.
+     */
+    public RouteCache(int capacity, Path directory){
+        this.memory = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest){
+                return size() > capacity;
+            }
+        };
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a cached route, loading it from disk if it is not in memory.
+     * @param key   Key of the route.
+     * @return  The compass direction indices of the route, or null if it has not been cached.
+     */
+    public byte[] get(String key){
+        synchronized (memory){
+            byte[] route = memory.get(key);
+            if (route != null){
+                return route;
+            }
+        }
+        byte[] route = read(key);
+        if (route != null){
+            synchronized (memory){
+                memory.put(key, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Adds a route to the cache, in memory and on disk.
+     * @param key   Key of the route.
+     * @param route The compass direction indices of the route.
+     */
+    public void put(String key, byte[] route){
+        synchronized (memory){
+            memory.put(key, route);
+        }
+        write(key, route);
+    }
+
+    /**
+     * Returns the number of routes currently held in memory.
+     * @return  Number of routes in memory.
+     */
+    public int memorySize(){
+        synchronized (memory){
+            return memory.size();
+        }
+    }
+
+    private Path file(String key){
+        return directory.resolve(key + ".route");
+    }
+
+    private byte[] read(String key){
+        if (directory == null || !Files.exists(file(key))){
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file(key)))){
+            if (in.readInt() != FORMAT_VERSION){
+                return null;
+            }
+            byte[] route = new byte[in.readInt()];
+            in.readFully(route);
+            return route;
+        } catch (IOException e) {
+            System.err.println("Could not read cached route " + key + ", it will be planned again");
+            return null;
+        }
+    }
+
+    private void write(String key, byte[] route){
+        if (directory == null){
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            // write to a temporary file first, so a half-written route is never read back
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))){
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(route.length);
+                out.write(route);
+            }
+            Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write cached route " + key);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.ed.inf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional command-line flags given after the positional arguments, in the form --name=value or just --name.
+ */
+public class RunOptions {
+    private final Map<String, String> flags = new HashMap<>();
+
+    /**
+     * Parses the flags from the command-line arguments, starting at a given position.
+     * @param args  The command-line arguments.
+     * @param from  Index of the first argument that may be a flag, earlier arguments are positional.
+     */
+    public RunOptions(String[] args, int from){
+        for (int i = from; i < args.length; i++){
+            if (!args[i].startsWith("--")){
+                System.err.println("Ignoring unrecognised argument " + args[i]);
+                continue;
+            }
+            int equals = args[i].indexOf('=');
+            if (equals < 0){
+                flags.put(args[i].substring(2), "true");
+            } else {
+                flags.put(args[i].substring(2, equals), args[i].substring(equals + 1));
+            }
+        }
+    }
+
+    /**
+     * Returns whether a flag was given.
+     * @param name  Name of the flag, without the leading dashes.
+     * @return  Boolean for whether the flag was given.
+     */
+    public boolean has(String name){
+        return flags.containsKey(name);
+    }
+
+    /**
+     * Returns the value of a flag.
+     * @param name          Name of the flag, without the leading dashes.
+     * @param defaultValue  Value returned if the flag was not given.
+     * @return  The value of the flag.
+     */
+    public String get(String name, String defaultValue){
+        return flags.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Returns the value of a flag as an integer.
+     * @param name          Name of the flag, without the leading dashes.
+     * @param defaultValue  Value returned if the flag was not given or is not a number.
+     * @return  The value of the flag.
+     */
+    public int getInt(String name, int defaultValue){
+        try {
+            return Integer.parseInt(flags.getOrDefault(name, Integer.toString(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for --" + name + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package uk.ac.ed.inf;
+
+import com.mapbox.geojson.MultiPolygon;
+import com.mapbox.geojson.Point;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path planner which finds the geometrically shortest route around the No-Fly zones and then turns it into legal moves.
+ * The route is found with Dijkstra's algorithm over a visibility graph, whose nodes are the corners of the No-Fly zones
+ * pushed slightly outwards plus the start and goal, with an edge between every pair of nodes that can see each other.
+ * The drone then steers towards each corner of the route in turn using App.findBestMove, skipping ahead whenever a later
+ * corner is already in sight. If that fails to reach the goal, the route is planned with A* instead.
+ */
+public class VisibilityGraphPlanner implements PathPlanner {
+    /** Distance in degrees the corners of the No-Fly zones are pushed out by. */
+    public static final double MARGIN = 0.0002;
+
+    private final NoFlyZoneSet noFlyZones;
+    private final CentralArea centralArea;
+    private final PathPlanner fallback;
+    // corners of the No-Fly zones, pushed out by the margin
+    private final double[] longitudes;
+    private final double[] latitudes;
+    // distance between every pair of corners that can see each other, infinite if they can't
+    private final double[][] distances;
+
+    /**
+     * Builds the visibility graph between the corners of the No-Fly zones.
+     * @param noFlyZone The No-Fly zones the drone avoids.
+     * @param centralURL    URL from which the central area is accessed.
+     */
+    public VisibilityGraphPlanner(MultiPolygon noFlyZone, URL centralURL){
+        this(NoFlyZoneSet.of(noFlyZone), CentralArea.getInstance(centralURL));
+    }
+
+    /**
+     * Builds the visibility graph from No-Fly zones which have already been compiled.
+     * @param noFlyZones    The compiled No-Fly zones the drone avoids.
+     * @param centralArea   The central area.
+     */
+    public VisibilityGraphPlanner(NoFlyZoneSet noFlyZones, CentralArea centralArea){
+        this.noFlyZones = noFlyZones;
+        this.centralArea = centralArea;
+        this.fallback = new AStarPathPlanner(noFlyZones, centralArea);
+        List<double[]> corners = new ArrayList<>();
+        for (List<List<Point>> polygon : noFlyZones.getSource().coordinates()){
+            addCorners(polygon.get(0), corners);
+        }
+        longitudes = new double[corners.size()];
+        latitudes = new double[corners.size()];
+        for (int i = 0; i < corners.size(); i++){
+            longitudes[i] = corners.get(i)[0];
+            latitudes[i] = corners.get(i)[1];
+        }
+        distances = new double[corners.size()][corners.size()];
+        for (int i = 0; i < corners.size(); i++){
+            for (int j = i + 1; j < corners.size(); j++){
+                distances[i][j] = distances[j][i] = sightDistance(longitudes[i], latitudes[i], longitudes[j], latitudes[j]);
+            }
+        }
+    }
+
+    /**
+     * Plans the moves of the drone along the shortest route around the No-Fly zones.
+     * @param start Starting position of the drone.
+     * @param goal  Position the drone is trying to get close to.
+     * @return  The angles of the moves in the order they are taken, or null if no path to the goal could be found.
+     */
+    @Override
+    public float[] planMoves(LngLat start, LngLat goal){
+        List<LngLat> route = shortestRoute(start, goal);
+        float[] moves = route == null ? null : followRoute(start, goal, route);
+        return moves != null ? moves : fallback.planMoves(start, goal);
+    }
+
+    /**
+     * Finds the shortest route from the start to the goal through the visibility graph.
+     * @param start Starting position of the drone.
+     * @param goal  Goal of the drone.
+     * @return  The corners of the route in order, ending with the goal, or null if the goal can't be reached.
+     */
+    public List<LngLat> shortestRoute(LngLat start, LngLat goal){
+        int corners = longitudes.length;
+        // the start and goal are added to the graph as the last two nodes
+        int startNode = corners;
+        int goalNode = corners + 1;
+        double[] fromStart = new double[corners + 2];
+        double[] toGoal = new double[corners + 2];
+        for (int i = 0; i < corners; i++){
+            fromStart[i] = sightDistance(start.longitude(), start.latitude(), longitudes[i], latitudes[i]);
+            toGoal[i] = sightDistance(longitudes[i], latitudes[i], goal.longitude(), goal.latitude());
+        }
+        toGoal[startNode] = sightDistance(start.longitude(), start.latitude(), goal.longitude(), goal.latitude());
+        double[] best = new double[corners + 2];
+        int[] previous = new int[corners + 2];
+        boolean[] done = new boolean[corners + 2];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+        best[startNode] = 0;
+        NodeQueue open = new NodeQueue();
+        open.push(startNode, 0, 0);
+        while (!open.isEmpty()){
+            int node = open.pop();
+            if (done[node]){
+                continue;
+            }
+            done[node] = true;
+            if (node == goalNode){
+                break;
+            }
+            for (int next = 0; next < corners + 2; next++){
+                if (done[next] || next == startNode){
+                    continue;
+                }
+                double edge;
+                if (next == goalNode){
+                    edge = toGoal[node];
+                } else if (node == startNode){
+                    edge = fromStart[next];
+                } else {
+                    edge = distances[node][next];
+                }
+                if (best[node] + edge < best[next]){
+                    best[next] = best[node] + edge;
+                    previous[next] = node;
+                    open.push(next, best[next], 0);
+                }
+            }
+        }
+        if (previous[goalNode] < 0){
+            return null;
+        }
+        List<LngLat> route = new ArrayList<>();
+        route.add(goal);
+        for (int node = previous[goalNode]; node != startNode; node = previous[node]){
+            route.add(0, new LngLat(longitudes[node], latitudes[node]));
+        }
+        return route;
+    }
+
+    /**
+     * Turns a route into legal moves by steering towards each of its corners in turn.
+     * @return  The angles of the moves, or null if the drone gets stuck or runs out of moves.
+     */
+    private float[] followRoute(LngLat start, LngLat goal, List<LngLat> route){
+        List<Float> moves = new ArrayList<>();
+        PositionIndex explored = new PositionIndex();
+        LngLat position = start;
+        int target = 0;
+        while (!position.closeTo(goal)){
+            // skip to the furthest corner of the route which is already in sight
+            for (int later = route.size() - 1; later > target; later--){
+                LngLat corner = route.get(later);
+                if (!noFlyZones.intersects(position.longitude(), position.latitude(), corner.longitude(), corner.latitude())){
+                    target = later;
+                    break;
+                }
+            }
+            if (target < route.size() - 1 && position.closeTo(route.get(target))){
+                target++;
+            }
+            float move = App.findBestMove(position, route.get(target), noFlyZones, explored, centralArea);
+            if (move == -1 || moves.size() == AStarPathPlanner.MAX_MOVES){
+                return null;
+            }
+            moves.add(move);
+            explored.add(position);
+            position = position.nextPosition(move);
+        }
+        float[] angles = new float[moves.size()];
+        for (int i = 0; i < angles.length; i++){
+            angles[i] = moves.get(i);
+        }
+        return angles;
+    }
+
+    /**
+     * Returns the length of the segment between two points if it does not cross a No-Fly zone, or infinity if it does.
+     */
+    private double sightDistance(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude){
+        if (noFlyZones.intersects(fromLongitude, fromLatitude, toLongitude, toLatitude)){
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.hypot(toLongitude - fromLongitude, toLatitude - fromLatitude);
+    }
+
+    /**
+     * Pushes each corner of a polygon outwards along the bisector of its two edges, far enough that the corner is the
+     * margin away from both edges, and adds the ones that do not end up inside another No-Fly zone.
+     */
+    private void addCorners(List<Point> border, List<double[]> corners){
+        // the border includes the first vertex twice
+        int n = border.size() - 1;
+        double area = 0;
+        for (int i = 0; i < n; i++){
+            area += border.get(i).longitude() * border.get(i + 1).latitude() - border.get(i + 1).longitude() * border.get(i).latitude();
+        }
+        // outward normals point right of each edge for anticlockwise polygons, and left for clockwise ones
+        double side = area > 0 ? 1 : -1;
+        for (int i = 0; i < n; i++){
+            Point previous = border.get((i + n - 1) % n);
+            Point corner = border.get(i);
+            Point next = border.get(i + 1);
+            double[] normal1 = normal(previous, corner, side);
+            double[] normal2 = normal(corner, next, side);
+            double bisectorLng = normal1[0] + normal2[0];
+            double bisectorLat = normal1[1] + normal2[1];
+            double length = Math.hypot(bisectorLng, bisectorLat);
+            if (length == 0){
+                continue;
+            }
+            bisectorLng /= length;
+            bisectorLat /= length;
+            // stretch the offset so the corner is the margin away from both edges, limited for very sharp corners
+            double stretch = 1 / Math.max(0.25, bisectorLng * normal1[0] + bisectorLat * normal1[1]);
+            double lng = corner.longitude() + bisectorLng * MARGIN * stretch;
+            double lat = corner.latitude() + bisectorLat * MARGIN * stretch;
+            if (!noFlyZones.contains(lng, lat)){
+                corners.add(new double[]{lng, lat});
+            }
+        }
+    }
+
+    private static double[] normal(Point from, Point to, double side){
+        double dx = to.longitude() - from.longitude();
+        double dy = to.latitude() - from.latitude();
+        double length = Math.hypot(dx, dy);
+        if (length == 0){
+            return new double[]{0, 0};
+        }
+        return new double[]{side * dy / length, -side * dx / length};
+    }
+}
@@ -0,0 +1,237 @@
+package uk.ac.ed.inf;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the data of the REST server at any size from a seed, for load testing without the real server: restaurants
+ * with menus, random No-Fly zones that never overlap each other, a restaurant or Appleton Tower, and days of orders with
+ * a mix of valid orders and every kind of invalid order. The same seed always gives exactly the same data, and each
+ * day's orders are generated one at a time so days of any size can be streamed.
+ */
+public class WorkloadGenerator {
+    /** The central area used, the same as the real server's. */
+    public static final LngLat[] CENTRAL_AREA = {
+            new LngLat(-3.192473, 55.946233), new LngLat(-3.192473, 55.942617),
+            new LngLat(-3.184319, 55.942617), new LngLat(-3.184319, 55.946233)};
+    // the invalid outcomes an order can be generated with, in the order they are checked
+    private static final OrderOutcome[] INVALID_OUTCOMES = {
+            OrderOutcome.InvalidCardNumber, OrderOutcome.InvalidExpiryDate, OrderOutcome.InvalidCvv,
+            OrderOutcome.InvalidPizzaCount, OrderOutcome.InvalidPizzaNotDefined,
+            OrderOutcome.InvalidPizzaCombinationMultipleSuppliers, OrderOutcome.InvalidTotal};
+    private static final DateTimeFormatter EXPIRY_FORMAT = DateTimeFormatter.ofPattern("MM/yy");
+    // area the restaurants and No-Fly zones are placed in, around the central area
+    private static final double MIN_LONGITUDE = -3.205;
+    private static final double MAX_LONGITUDE = -3.175;
+    private static final double MIN_LATITUDE = 55.938;
+    private static final double MAX_LATITUDE = 55.951;
+    // space always left between No-Fly zones, and around restaurants and Appleton Tower, so the drone can fly through
+    private static final double GAP = 4 * CompassDirection.MOVE_LENGTH;
+
+    private final long seed;
+    private final double validFraction;
+
+    /**
+     * Creates a generator where 70% of orders are valid.
+     * @param seed  Seed the data is generated from.
+     */
+    public WorkloadGenerator(long seed){
+        this(seed, 0.7);
+    }
+
+    /**
+     * Creates a generator.
+     * @param seed  Seed the data is generated from.
+     * @param validFraction Fraction of orders which are valid, the rest are shared equally between the invalid outcomes.
+     */
+    public WorkloadGenerator(long seed, double validFraction){
+        this.seed = seed;
+        this.validFraction = validFraction;
+    }
+
+    /**
+     * Generates the restaurants, each with between 2 and 5 pizzas that no other restaurant sells.
+     * @param count Number of restaurants, at least 2 so orders can mix suppliers.
+     * @return  The restaurants.
+     */
+    public Restaurant[] restaurants(int count){
+        Random random = new Random(seed);
+        Restaurant[] restaurants = new Restaurant[count];
+        for (int r = 0; r < count; r++){
+            LngLat position;
+            do {
+                position = randomPosition(random);
+            } while (position.distanceTo(App.DRONE_START) < GAP);
+            Item[] menu = new Item[2 + random.nextInt(4)];
+            for (int i = 0; i < menu.length; i++){
+                menu[i] = new Item("Pizza " + (r + 1) + "-" + (i + 1), 500 + 100 * random.nextInt(11));
+            }
+            restaurants[r] = new Restaurant("Restaurant " + (r + 1), position.longitude(), position.latitude(), menu);
+        }
+        return restaurants;
+    }
+
+    /**
+     * Generates random convex No-Fly zones which don't overlap. Each zone fits in a circle which is kept a gap away from
+     * every other zone's circle, the restaurants and Appleton Tower, and the zones get smaller as more are asked for so
+     * dense maps still fit. Fewer zones are returned if no more can be placed.
+     * @param count Number of zones wanted.
+     * @param restaurants   The restaurants, which the zones are kept away from.
+     * @return  The zones, each a closed ring of between 3 and 8 vertices.
+     */
+    public NoFlyZone[] noFlyZones(int count, Restaurant[] restaurants){
+        Random random = new Random(seed * 31 + 1);
+        double area = (MAX_LONGITUDE - MIN_LONGITUDE) * (MAX_LATITUDE - MIN_LATITUDE);
+        double maxRadius = Math.max(2 * CompassDirection.MOVE_LENGTH, Math.min(0.001, Math.sqrt(area / Math.max(count, 1)) / 4));
+        List<double[]> circles = new ArrayList<>();
+        List<NoFlyZone> zones = new ArrayList<>();
+        for (int attempt = 0; attempt < 200 * count && zones.size() < count; attempt++){
+            LngLat centre = randomPosition(random);
+            double radius = maxRadius * (0.5 + random.nextDouble() / 2);
+            if (!clear(centre, radius, circles, restaurants)){
+                continue;
+            }
+            circles.add(new double[]{centre.longitude(), centre.latitude(), radius});
+            // vertices at random angles around the circle, in order so the polygon is convex
+            double[] angles = new double[3 + random.nextInt(6)];
+            for (int i = 0; i < angles.length; i++){
+                angles[i] = random.nextDouble() * 2 * Math.PI;
+            }
+            Arrays.sort(angles);
+            double[][] coordinates = new double[angles.length + 1][];
+            for (int i = 0; i < angles.length; i++){
+                coordinates[i] = new double[]{centre.longitude() + radius * Math.cos(angles[i]), centre.latitude() + radius * Math.sin(angles[i])};
+            }
+            coordinates[angles.length] = coordinates[0];
+            zones.add(new NoFlyZone("Zone " + (zones.size() + 1), coordinates));
+        }
+        return zones.toArray(new NoFlyZone[0]);
+    }
+
+    /**
+     * Generates the orders of a day one at a time. The orders of a day only depend on the seed, the date, the number of
+     * orders and the restaurants, so they can be generated again identically.
+     * @param date  The date of the orders, in yyyy-mm-dd format.
+     * @param count Number of orders.
+     * @param restaurants   The restaurants pizzas are ordered from.
+     * @param handler   Receives each order as it is generated.
+     * @throws IOException  If the handler fails.
+     */
+    public void orders(String date, int count, Restaurant[] restaurants, OrderReader.OrderHandler handler) throws IOException {
+        LocalDate orderDate = LocalDate.parse(date);
+        int dateHash = date.hashCode();
+        Random random = new Random(seed ^ ((long) dateHash << 32));
+        for (int i = 0; i < count; i++){
+            OrderOutcome outcome = random.nextDouble() < validFraction ? null : INVALID_OUTCOMES[random.nextInt(INVALID_OUTCOMES.length)];
+            // multiplying by an odd number and xor-ing are both one to one, so every order number of the day is different
+            String orderNo = String.format("%08X", (i * 0x9E3779B1) ^ dateHash);
+            handler.accept(order(random, orderNo, orderDate, i, restaurants, outcome));
+        }
+    }
+
+    /**
+     * Generates the orders of a day.
+     * @param date  The date of the orders, in yyyy-mm-dd format.
+     * @param count Number of orders.
+     * @param restaurants   The restaurants pizzas are ordered from.
+     * @return  The orders.
+     */
+    public Order[] orders(String date, int count, Restaurant[] restaurants){
+        List<Order> orders = new ArrayList<>(count);
+        try {
+            orders(date, count, restaurants, orders::add);
+        } catch (IOException e) {
+            // adding to a list never fails
+            throw new IllegalStateException(e);
+        }
+        return orders.toArray(new Order[0]);
+    }
+
+    /**
+     * Makes one order, valid or with exactly the one problem that gives the invalid outcome wanted.
+     */
+    private static Order order(Random random, String orderNo, LocalDate date, int customer, Restaurant[] restaurants, OrderOutcome outcome){
+        Restaurant restaurant = restaurants[random.nextInt(restaurants.length)];
+        int pizzaCount = outcome == OrderOutcome.InvalidPizzaCount ? (random.nextBoolean() ? 0 : 5) : 1 + random.nextInt(4);
+        String[] items = new String[pizzaCount];
+        int total = 100;
+        for (int i = 0; i < pizzaCount; i++){
+            Item item = restaurant.menu()[random.nextInt(restaurant.menu().length)];
+            items[i] = item.name();
+            total += item.priceInPence();
+        }
+        if (outcome == OrderOutcome.InvalidPizzaNotDefined){
+            items[random.nextInt(pizzaCount)] = "Pizza-Surprise";
+        } else if (outcome == OrderOutcome.InvalidPizzaCombinationMultipleSuppliers){
+            // swap the last pizza for one from a different restaurant, making sure there are at least two pizzas
+            Restaurant other = restaurants[(Arrays.asList(restaurants).indexOf(restaurant) + 1 + random.nextInt(restaurants.length - 1)) % restaurants.length];
+            Item item = other.menu()[random.nextInt(other.menu().length)];
+            if (pizzaCount == 1){
+                items = Arrays.copyOf(items, 2);
+                pizzaCount = 2;
+            } else {
+                total -= priceOf(restaurant, items[pizzaCount - 1]);
+            }
+            items[pizzaCount - 1] = item.name();
+            total += item.priceInPence();
+        } else if (outcome == OrderOutcome.InvalidTotal){
+            total += random.nextBoolean() ? 100 : -1;
+        }
+        StringBuilder cardNumber = new StringBuilder();
+        for (int i = 0; i < 16; i++){
+            cardNumber.append((char) ('0' + random.nextInt(10)));
+        }
+        if (outcome == OrderOutcome.InvalidCardNumber){
+            cardNumber.setLength(random.nextInt(16));
+            cardNumber.append('X');
+        }
+        // valid cards expire from the month of the order to 5 years later, invalid ones before it
+        LocalDate expiry = outcome == OrderOutcome.InvalidExpiryDate ? date.minusMonths(1 + random.nextInt(24))
+                : date.plusMonths(random.nextInt(60));
+        String cvv = String.format("%03d", random.nextInt(1000));
+        if (outcome == OrderOutcome.InvalidCvv){
+            cvv = random.nextBoolean() ? cvv.substring(1) : cvv + random.nextInt(10);
+        }
+        return new Order(orderNo, date.toString(), "Customer " + customer, cardNumber.toString(), expiry.format(EXPIRY_FORMAT),
+                cvv, total, items);
+    }
+
+    private static int priceOf(Restaurant restaurant, String pizza){
+        for (Item item : restaurant.menu()){
+            if (item.name().equals(pizza)){
+                return item.priceInPence();
+            }
+        }
+        return 0;
+    }
+
+    private static LngLat randomPosition(Random random){
+        return new LngLat(MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE),
+                MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE));
+    }
+
+    /**
+     * Checks a circle keeps the gap from the other zones' circles, the restaurants and Appleton Tower.
+     */
+    private static boolean clear(LngLat centre, double radius, List<double[]> circles, Restaurant[] restaurants){
+        if (centre.distanceTo(App.DRONE_START) < radius + GAP){
+            return false;
+        }
+        for (Restaurant restaurant : restaurants){
+            if (centre.distanceTo(restaurant.longitude(), restaurant.latitude()) < radius + GAP){
+                return false;
+            }
+        }
+        for (double[] circle : circles){
+            if (centre.distanceTo(circle[0], circle[1]) < radius + circle[2] + GAP){
+                return false;
+            }
+        }
+        return true;
+    }
+}
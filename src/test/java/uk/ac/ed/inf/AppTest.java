@@ -1,15 +1,35 @@
 package uk.ac.ed.inf;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
 import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.MultiPolygon;
 import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
 import javax.sound.sampled.Line;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Unit tests for the program.
@@ -115,4 +135,843 @@ public class AppTest
         assertTrue(NoFlyZone.linesIntersect(line1, line2));
     }
 
+
+    /**
+     * Writes the central area to a local file, so tests that plan paths do not depend on the REST server.
+     */
+    private static URL localCentralArea() throws IOException {
+        File file = File.createTempFile("centralArea", ".json");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("[{\"name\":\"Forrest Hill\",\"longitude\":-3.192473,\"latitude\":55.946233}," +
+                "{\"name\":\"KFC\",\"longitude\":-3.192473,\"latitude\":55.942617}," +
+                "{\"name\":\"Buccleuch St bus stop\",\"longitude\":-3.184319,\"latitude\":55.942617}," +
+                "{\"name\":\"Top of the Meadows\",\"longitude\":-3.184319,\"latitude\":55.946233}]");
+        writer.close();
+        return file.toURI().toURL();
+    }
+
+    /**
+     * A cup shaped No-Fly zone, open to the north, with the goal of testCupPath inside it.
+     */
+    private static MultiPolygon cupNoFlyZone(){
+        double[][] cup = {{-3.2015, 55.9515}, {-3.1985, 55.9515}, {-3.1985, 55.9545}, {-3.1990, 55.9545}, {-3.1990, 55.9520},
+                {-3.2010, 55.9520}, {-3.2010, 55.9545}, {-3.2015, 55.9545}, {-3.2015, 55.9515}};
+        List<Point> points = new ArrayList<>();
+        for (double[] point : cup){
+            points.add(Point.fromLngLat(point[0], point[1]));
+        }
+        return MultiPolygon.fromPolygons(List.of(Polygon.fromLngLats(List.of(points))));
+    }
+
+    public void testCupPath() throws IOException {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        LngLat start = new LngLat(-3.2, 55.95);
+        LngLat goal = new LngLat(-3.2, 55.953);
+        float[] aStar = new AStarPathPlanner(noFlyZone, centralURL).planMoves(start, goal);
+        assertNotNull(aStar);
+        LngLat position = start;
+        for (float move : aStar){
+            assertFalse(NoFlyZone.intersectsNoFlyZones(noFlyZone, position, move));
+            position = position.nextPosition(move);
+        }
+        assertTrue(position.closeTo(goal));
+        float[] greedy = new GreedyPathPlanner(noFlyZone, centralURL).planMoves(start, goal);
+        assertTrue(greedy == null || aStar.length <= greedy.length);
+    }
+
+    public void testPositionIndex(){
+        Random random = new Random(2);
+        List<LngLat> explored = new ArrayList<>();
+        PositionIndex index = new PositionIndex();
+        for (int i = 0; i < 500; i++){
+            LngLat point = new LngLat(-3.19 + random.nextDouble() * 0.003, 55.944 + random.nextDouble() * 0.003);
+            explored.add(point);
+            index.add(point);
+        }
+        for (int i = 0; i < 5000; i++){
+            LngLat point = new LngLat(-3.19 + random.nextDouble() * 0.003, 55.944 + random.nextDouble() * 0.003);
+            boolean close = false;
+            for (LngLat other : explored){
+                if (point.closeTo(other)){
+                    close = true;
+                    break;
+                }
+            }
+            assertEquals(close, index.containsCloseTo(point));
+        }
+    }
+
+    public void testNoFlyZoneSet(){
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        NoFlyZoneSet compiled = new NoFlyZoneSet(noFlyZone);
+        assertEquals(8, compiled.getEdgeCount());
+        // of() keeps more than one compiled set, so alternating between two No-Fly zones doesn't recompile them
+        MultiPolygon other = cupNoFlyZone();
+        NoFlyZoneSet first = NoFlyZoneSet.of(noFlyZone);
+        NoFlyZoneSet second = NoFlyZoneSet.of(other);
+        assertSame(first, NoFlyZoneSet.of(noFlyZone));
+        assertSame(second, NoFlyZoneSet.of(other));
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++){
+            LngLat position = new LngLat(-3.202 + random.nextDouble() * 0.004, 55.951 + random.nextDouble() * 0.004);
+            float angle = 22.5f * random.nextInt(16);
+            LngLat next = position.nextPosition(angle);
+            // compare against testing every edge as a LineString
+            boolean expected = false;
+            List<Point> border = noFlyZone.coordinates().get(0).get(0);
+            for (int j = 0; j < border.size() - 1; j++){
+                LineString edge = LineString.fromLngLats(List.of(border.get(j), border.get(j + 1)));
+                LineString move = LineString.fromLngLats(List.of(Point.fromLngLat(position.longitude(), position.latitude()), Point.fromLngLat(next.longitude(), next.latitude())));
+                expected |= NoFlyZone.linesIntersect(edge, move);
+            }
+            assertEquals(expected, compiled.intersects(position, angle));
+        }
+    }
+
+    /**
+     * Octagonal No-Fly zones laid out on a square grid, 0.002 degrees apart.
+     */
+    private static MultiPolygon octagonNoFlyZones(int side){
+        List<Polygon> polygons = new ArrayList<>();
+        for (int i = 0; i < side * side; i++){
+            double lng = -3.2 + (i % side) * 0.002;
+            double lat = 55.9 + (i / side) * 0.002;
+            List<Point> points = new ArrayList<>();
+            for (int j = 0; j <= 8; j++){
+                points.add(Point.fromLngLat(lng + 0.0007 * Math.sin(j * Math.PI / 4), lat + 0.0007 * Math.cos(j * Math.PI / 4)));
+            }
+            polygons.add(Polygon.fromLngLats(List.of(points)));
+        }
+        return MultiPolygon.fromPolygons(polygons);
+    }
+
+    public void testEdgeGridQueryCost(){
+        Random random = new Random(4);
+        double[] meanCandidates = new double[3];
+        int[] sides = {4, 16, 32};
+        for (int k = 0; k < sides.length; k++){
+            MultiPolygon noFlyZone = octagonNoFlyZones(sides[k]);
+            NoFlyZoneSet compiled = new NoFlyZoneSet(noFlyZone);
+            assertEquals(8 * sides[k] * sides[k], compiled.getEdgeCount());
+            long candidates = 0;
+            for (int i = 0; i < 2000; i++){
+                LngLat position = new LngLat(-3.2 + random.nextDouble() * 0.002 * sides[k], 55.9 + random.nextDouble() * 0.002 * sides[k]);
+                LngLat next = position.nextPosition(22.5 * random.nextInt(16));
+                candidates += compiled.candidateCount(position.longitude(), position.latitude(), next.longitude(), next.latitude());
+                // the grid must give the same answer as testing every edge
+                boolean expected = false;
+                for (List<List<Point>> polygon : noFlyZone.coordinates()){
+                    List<Point> border = polygon.get(0);
+                    for (int j = 0; j < border.size() - 1; j++){
+                        expected |= NoFlyZone.linesIntersect(border.get(j).longitude(), border.get(j).latitude(), border.get(j + 1).longitude(), border.get(j + 1).latitude(),
+                                position.longitude(), position.latitude(), next.longitude(), next.latitude());
+                    }
+                }
+                assertEquals(expected, compiled.intersects(position.longitude(), position.latitude(), next.longitude(), next.latitude()));
+            }
+            meanCandidates[k] = candidates / 2000.0;
+        }
+        // 64 times as many edges, but the edges tested per move stay about the same
+        assertTrue(meanCandidates[2] < 2 * meanCandidates[0] + 1);
+    }
+
+    public void testCompassDirections(){
+        LngLat a = new LngLat(-3.186874, 55.944494);
+        for (float angle = 0; angle < 360; angle += 22.5){
+            CompassDirection direction = CompassDirection.fromAngle(angle);
+            assertEquals(Float.toString(angle), direction.getAngleString());
+            // the table must match the trigonometry exactly
+            assertEquals(a.latitude() + Math.cos(Math.toRadians(angle)) * 0.00015, direction.nextLatitude(a.latitude()));
+            assertEquals(a.longitude() + Math.sin(Math.toRadians(angle)) * 0.00015, direction.nextLongitude(a.longitude()));
+            assertEquals(CompassDirection.fromAngle((angle + 180) % 360), direction.opposite());
+        }
+        assertNull(CompassDirection.fromAngle(10));
+        assertNull(CompassDirection.fromAngle(360));
+    }
+
+    public void testRouteCache() throws IOException {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        LngLat start = new LngLat(-3.2, 55.95);
+        LngLat goal = new LngLat(-3.2, 55.953);
+        File directory = new File(System.getProperty("java.io.tmpdir"), "routecache-" + System.nanoTime());
+        CachingPathPlanner planner = new CachingPathPlanner(new AStarPathPlanner(noFlyZone, centralURL), new RouteCache(4, directory.toPath()), noFlyZone, centralURL);
+        float[] planned = planner.planMoves(start, goal);
+        // a new cache over the same directory finds the route on disk
+        RouteCache reloaded = new RouteCache(4, directory.toPath());
+        assertNotNull(reloaded.get(planner.key(start, goal)));
+        CachingPathPlanner cached = new CachingPathPlanner(new AStarPathPlanner(noFlyZone, centralURL), reloaded, noFlyZone, centralURL);
+        assertTrue(Arrays.equals(planned, cached.planMoves(start, goal)));
+        // a slightly different start position shares the cache entry
+        assertEquals(planner.key(start, goal), planner.key(new LngLat(-3.2 + 1e-9, 55.95), goal));
+        assertTrue(Arrays.equals(planned, cached.planMoves(new LngLat(-3.2 + 1e-9, 55.95), goal)));
+    }
+
+    public void testVisibilityGraphPath() throws IOException {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        LngLat start = new LngLat(-3.2, 55.95);
+        LngLat goal = new LngLat(-3.2, 55.953);
+        VisibilityGraphPlanner planner = new VisibilityGraphPlanner(noFlyZone, centralURL);
+        // the route has to go round a top corner of the cup before dropping into it
+        List<LngLat> route = planner.shortestRoute(start, goal);
+        assertTrue(route.size() >= 3);
+        float[] moves = planner.planMoves(start, goal);
+        assertNotNull(moves);
+        LngLat position = start;
+        for (float move : moves){
+            assertFalse(NoFlyZone.intersectsNoFlyZones(noFlyZone, position, move));
+            position = position.nextPosition(move);
+        }
+        assertTrue(position.closeTo(goal));
+        float[] aStar = new AStarPathPlanner(noFlyZone, centralURL).planMoves(start, goal);
+        assertTrue(moves.length <= aStar.length * 1.1);
+    }
+
+    public void testFlowFieldPath() throws Exception {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        LngLat start = new LngLat(-3.2, 55.95);
+        LngLat goal = new LngLat(-3.2, 55.953);
+        Restaurant[] restaurants = {new Restaurant("Cup", goal.longitude(), goal.latitude(), new Item[0])};
+        FlowFieldPlanner planner = new FlowFieldPlanner(restaurants, noFlyZone, centralURL);
+        planner.rebuildInBackground(restaurants, Runnable::run).get();
+        float[] moves = planner.planMoves(start, goal);
+        assertNotNull(moves);
+        LngLat position = start;
+        for (float move : moves){
+            assertFalse(NoFlyZone.intersectsNoFlyZones(noFlyZone, position, move));
+            position = position.nextPosition(move);
+        }
+        assertTrue(position.closeTo(goal));
+        float[] aStar = new AStarPathPlanner(noFlyZone, centralURL).planMoves(start, goal);
+        assertTrue(moves.length <= aStar.length * 1.1);
+    }
+
+    public void testDateRange(){
+        List<String> dates = BatchRunner.dateRange("2024-02-27", "2024-03-01");
+        assertEquals(List.of("2024-02-27", "2024-02-28", "2024-02-29", "2024-03-01"), dates);
+        assertEquals(List.of("2023-12-31"), BatchRunner.dateRange("2023-12-31", "2023-12-31"));
+        assertNull(BatchRunner.dateRange("2023-02-01", "2023-01-01"));
+        assertNull(BatchRunner.dateRange("2023-13-01", "2023-12-01"));
+    }
+
+    /**
+     * Creates three restaurants around Appleton Tower, each with one pizza.
+     */
+    private static Restaurant[] localRestaurants(){
+        return new Restaurant[]{
+                new Restaurant("Near", -3.1912, 55.9455, new Item[]{new Item("Margarita", 1000)}),
+                new Restaurant("South", -3.1838, 55.9361, new Item[]{new Item("Calzone", 1400)}),
+                new Restaurant("West", -3.2025, 55.9433, new Item[]{new Item("Meat Lover", 1400)})};
+    }
+
+    /**
+     * Creates valid orders of one pizza each, taking turns between the restaurants.
+     */
+    private static Order[] localOrders(Restaurant[] restaurants, int count){
+        Order[] orders = new Order[count];
+        for (int i = 0; i < orders.length; i++){
+            Item item = restaurants[i % restaurants.length].menu()[0];
+            orders[i] = new Order(String.format("%08d", i), "2023-01-01", "Customer", "1234567812345678", "12/30", "123",
+                    item.priceInPence() + 100, new String[]{item.name()});
+        }
+        return orders;
+    }
+
+    public void testParallelPlanDay() throws IOException {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        Restaurant[] restaurants = localRestaurants();
+        Order[] orders = localOrders(restaurants, 30);
+        PathPlanner planner = new AStarPathPlanner(noFlyZone, centralURL);
+        App.DayPlan sequential = App.planDay(orders, restaurants, planner, false);
+        App.DayPlan parallel = App.planDay(orders, restaurants, planner, true);
+        int delivered = 0;
+        for (int i = 0; i < orders.length; i++){
+            assertEquals(sequential.deliveries()[i].getOutcome(), parallel.deliveries()[i].getOutcome());
+            if (parallel.deliveries()[i].getOutcome().equals(OrderOutcome.Delivered.toString())){
+                delivered++;
+            }
+        }
+        // the move limit stops some orders being delivered
+        assertTrue(delivered > 0 && delivered < orders.length);
+        assertEquals(sequential.flightpath().size(), parallel.flightpath().size());
+        for (int i = 0; i < parallel.flightpath().size(); i++){
+            DroneMove a = sequential.flightpath().get(i);
+            DroneMove b = parallel.flightpath().get(i);
+            assertEquals(a.getOrderNo(), b.getOrderNo());
+            assertEquals(a.getAngle(), b.getAngle());
+            assertEquals(a.getToLongitude(), b.getToLongitude());
+            assertEquals(a.getToLatitude(), b.getToLatitude());
+            if (i > 0){
+                assertTrue(b.getTicksSinceStartOfCalculation() >= parallel.flightpath().get(i - 1).getTicksSinceStartOfCalculation());
+            }
+        }
+    }
+
+    public void testOrderScheduler(){
+        List<Order> orders = new ArrayList<>();
+        int[] prices = {3000, 1100, 1100, 1500, 2500};
+        for (int i = 0; i < prices.length; i++){
+            orders.add(new Order(Integer.toString(i), "2023-01-01", "Customer", "1234567812345678", "12/30", "123", prices[i], new String[0]));
+        }
+        // the first order is nearest but most expensive to fly to, and the last can't be reached
+        int[] costs = {60, 40, 40, 50, -1};
+        boolean[] count = new OrderScheduler(OrderScheduler.Objective.COUNT, 100).select(orders, costs);
+        assertTrue(Arrays.equals(new boolean[]{false, true, true, false, false}, count));
+        boolean[] revenue = new OrderScheduler(OrderScheduler.Objective.REVENUE, 100).select(orders, costs);
+        assertTrue(Arrays.equals(new boolean[]{true, true, false, false, false}, revenue));
+        // thousands of orders are scheduled by cost group, not one at a time
+        List<Order> many = new ArrayList<>();
+        int[] manyCosts = new int[20000];
+        for (int i = 0; i < manyCosts.length; i++){
+            many.add(orders.get(i % 4));
+            manyCosts[i] = costs[i % 4];
+        }
+        boolean[] chosen = new OrderScheduler(OrderScheduler.Objective.COUNT, 2000).select(many, manyCosts);
+        int moves = 0, delivered = 0;
+        for (int i = 0; i < chosen.length; i++){
+            if (chosen[i]){
+                moves += manyCosts[i];
+                delivered++;
+            }
+        }
+        assertTrue(moves <= 2000);
+        assertEquals(50, delivered);
+    }
+
+    public void testFleetPlanDay() throws IOException {
+        URL centralURL = localCentralArea();
+        Restaurant[] restaurants = localRestaurants();
+        Order[] orders = localOrders(restaurants, 30);
+        PathPlanner planner = new AStarPathPlanner(cupNoFlyZone(), centralURL);
+        App.DayPlan single = App.planDay(orders, restaurants, planner);
+        FleetPlanner.FleetPlan fleet = FleetPlanner.planDay(orders, restaurants, planner, 3, null);
+        int singleDelivered = 0, fleetDelivered = 0;
+        for (int i = 0; i < orders.length; i++){
+            if (single.deliveries()[i].getOutcome().equals(OrderOutcome.Delivered.toString())){
+                singleDelivered++;
+            }
+            if (fleet.deliveries()[i].getOutcome().equals(OrderOutcome.Delivered.toString())){
+                fleetDelivered++;
+            }
+        }
+        assertTrue(fleetDelivered > singleDelivered);
+        assertEquals(3, fleet.flightpaths().size());
+        Set<String> flown = new HashSet<>();
+        for (List<DroneMove> flightpath : fleet.flightpaths()){
+            // each drone keeps to its own move limit and finishes back at Appleton Tower
+            assertTrue(flightpath.size() <= FleetPlanner.MOVE_LIMIT);
+            if (!flightpath.isEmpty()){
+                DroneMove last = flightpath.get(flightpath.size() - 1);
+                assertEquals(App.DRONE_START, new LngLat(last.getToLongitude(), last.getToLatitude()));
+            }
+            for (DroneMove move : flightpath){
+                flown.add(move.getOrderNo());
+            }
+        }
+        assertEquals(fleetDelivered, flown.size());
+    }
+
+    public void testMenuIndex(){
+        Restaurant[] restaurants = localRestaurants();
+        MenuIndex index = MenuIndex.of(restaurants);
+        assertSame(index, MenuIndex.of(restaurants));
+        String[][] items = {{"Margarita", "Margarita"}, {"Pepperoni"}, {"Margarita", "Calzone"}, {"Calzone"}, {}, {"Missing"}};
+        int[] totals = {2100, 1100, 2500, 1000, 100, 1100};
+        String[] outcomes = {"Valid", OrderOutcome.InvalidPizzaNotDefined.toString(), OrderOutcome.InvalidPizzaCombinationMultipleSuppliers.toString(),
+                OrderOutcome.InvalidTotal.toString(), OrderOutcome.InvalidPizzaCount.toString(), OrderOutcome.InvalidPizzaNotDefined.toString()};
+        for (int i = 0; i < items.length; i++){
+            Order order = new Order(Integer.toString(i), "2023-01-01", "Customer", "1234567812345678", "12/30", "123", totals[i], items[i]);
+            assertEquals(outcomes[i], order.getValidity(restaurants));
+            assertEquals(order.getValidity(restaurants), index.check(order).outcome());
+        }
+        Order order = new Order("6", "2023-01-01", "Customer", "1234567812345678", "12/30", "123", 1500, new String[]{"Calzone"});
+        assertEquals("South", order.getRestaurant(restaurants).name());
+        assertNull(new Order("7", "2023-01-01", "Customer", "1234567812345678", "12/30", "123", 1100, new String[]{"Missing"}).getRestaurant(restaurants));
+        // the card is checked before the pizzas
+        assertEquals(OrderOutcome.InvalidCvv.toString(), new Order("8", "2023-01-01", "Customer", "1234567812345678", "12/30", "12", 1100, new String[]{"Missing"}).getValidity(restaurants));
+        assertEquals(1500, Order.getDeliveryCost(restaurants, "Calzone"));
+        try {
+            Order.getDeliveryCost(restaurants, "Margarita", "Calzone");
+            fail();
+        } catch (InvalidPizzaCombinationException e) {
+            assertEquals("Invalid Pizza Combination", e.getMessage());
+        }
+    }
+
+    public void testOrderBookkeeping(){
+        Restaurant[] restaurants = localRestaurants();
+        Order[] orders = localOrders(restaurants, 20000);
+        List<Order> sorted = Order.sortOrders(orders, restaurants, App.DRONE_START);
+        assertEquals(orders.length, sorted.size());
+        // nearest restaurant first, with orders to the same restaurant kept in their original order
+        for (int i = 1; i < sorted.size(); i++){
+            Restaurant previous = sorted.get(i - 1).getRestaurant(restaurants);
+            Restaurant current = sorted.get(i).getRestaurant(restaurants);
+            double previousDistance = App.DRONE_START.distanceTo(new LngLat(previous.longitude(), previous.latitude()));
+            double currentDistance = App.DRONE_START.distanceTo(new LngLat(current.longitude(), current.latitude()));
+            assertTrue(previousDistance <= currentDistance);
+            if (previous == current){
+                assertTrue(sorted.get(i - 1).orderNo().compareTo(sorted.get(i).orderNo()) < 0);
+            }
+        }
+        // the outcomes worked out once for the day give the same order and outcomes
+        MenuIndex.Validation[] validations = MenuIndex.of(restaurants).checkAll(orders);
+        assertEquals(sorted, Order.sortOrders(orders, validations, App.DRONE_START));
+        assertEquals(orders[7].getValidity(restaurants), Delivery.getDeliveries(orders, validations)[7].getOutcome());
+        Delivery[] deliveries = Delivery.getDeliveries(orders, restaurants);
+        DeliveryBook book = new DeliveryBook(deliveries);
+        for (int i = 0; i < orders.length; i += 2){
+            book.setDelivered(orders[i]);
+        }
+        for (int i = 0; i < orders.length; i++){
+            assertEquals(i % 2 == 0 ? OrderOutcome.Delivered.toString() : "Valid", deliveries[i].getOutcome());
+        }
+        // every delivery with a repeated order number is changed
+        Delivery[] repeated = {new Delivery("1", "Valid", 0), new Delivery("2", "Valid", 0), new Delivery("1", "Valid", 0)};
+        new DeliveryBook(repeated).setValidNotDelivered(new Order("1", "2023-01-01", "Customer", "1234567812345678", "12/30", "123", 1100, new String[]{"Margarita"}));
+        assertEquals(OrderOutcome.ValidButNotDelivered.toString(), repeated[0].getOutcome());
+        assertEquals("Valid", repeated[1].getOutcome());
+        assertEquals(OrderOutcome.ValidButNotDelivered.toString(), repeated[2].getOutcome());
+    }
+
+    public void testStreamingOrders() throws IOException {
+        Restaurant[] restaurants = localRestaurants();
+        Order[] orders = localOrders(restaurants, 50);
+        File ordersFile = File.createTempFile("orders", ".json");
+        ordersFile.deleteOnExit();
+        // written as the REST server does, without the properties jackson would add for the validity checks
+        List<Map<String, Object>> json = new ArrayList<>();
+        for (Order order : orders){
+            json.add(Map.of("orderNo", order.orderNo(), "orderDate", order.orderDate(), "customer", order.customer(),
+                    "creditCardNumber", order.creditCardNumber(), "creditCardExpiry", order.creditCardExpiry(), "cvv", order.cvv(),
+                    "priceTotalInPence", order.priceTotalInPence(), "orderItems", order.orderItems()));
+        }
+        new ObjectMapper().writeValue(ordersFile, json);
+        List<Order> read = new ArrayList<>();
+        assertEquals(50, OrderReader.read(ordersFile.toURI().toURL(), read::add));
+        for (int i = 0; i < orders.length; i++){
+            assertEquals(orders[i].orderNo(), read.get(i).orderNo());
+            assertTrue(Arrays.equals(orders[i].orderItems(), read.get(i).orderItems()));
+        }
+        // the streamed deliveries file is the same as the one written all at once
+        Delivery[] deliveries = Delivery.getDeliveries(orders, restaurants);
+        File streamed = File.createTempFile("deliveries", ".json");
+        streamed.deleteOnExit();
+        try (DeliveriesWriter writer = new DeliveriesWriter(streamed.toPath())){
+            for (Delivery delivery : deliveries){
+                writer.write(delivery);
+            }
+        }
+        assertEquals(new ObjectMapper().writeValueAsString(deliveries), new String(Files.readAllBytes(streamed.toPath())));
+        File invalid = File.createTempFile("orders", ".json");
+        invalid.deleteOnExit();
+        try (FileWriter writer = new FileWriter(invalid)){
+            writer.write("{\"orderNo\": \"1\"}");
+        }
+        try {
+            OrderReader.read(invalid.toURI().toURL(), order -> {});
+            fail();
+        } catch (IOException e) {
+            // expected, the orders must be an array
+        }
+        // a day of only invalid orders still gets an empty flightpath and drone file, as it does when not streaming
+        List<Map<String, Object>> invalidJson = new ArrayList<>();
+        for (Map<String, Object> order : json){
+            Map<String, Object> badCvv = new HashMap<>(order);
+            badCvv.put("cvv", "1");
+            invalidJson.add(badCvv);
+        }
+        String date = "2023-09-09";
+        PathPlanner planner = new AStarPathPlanner(cupNoFlyZone(), localCentralArea());
+        assertEquals(50, App.planStreamingDay(date, new ByteArrayInputStream(new ObjectMapper().writeValueAsBytes(invalidJson)),
+                MenuIndex.of(restaurants), planner, new RunOptions(new String[]{"--streaming"}, 0)));
+        Path flightpath = ResultWriter.resultFile("flightpath-" + date + ".json", false);
+        Path drone = ResultWriter.resultFile("drone-" + date + ".geojson", false);
+        Path written = ResultWriter.resultFile("deliveries-" + date + ".json", false);
+        try {
+            assertEquals("[]", new String(Files.readAllBytes(flightpath)));
+            assertTrue(new String(Files.readAllBytes(drone)).contains("LineString"));
+            assertEquals(50, new ObjectMapper().readTree(written.toFile()).size());
+        } finally {
+            Files.deleteIfExists(flightpath);
+            Files.deleteIfExists(drone);
+            Files.deleteIfExists(written);
+        }
+    }
+
+    public void testResultWriter() throws IOException {
+        List<DroneMove> flightpath = new ArrayList<>();
+        flightpath.add(new DroneMove("1", -3.186874, 55.944494, "90.0", -3.186724, 55.944494, 1));
+        flightpath.add(new DroneMove("1", -3.186724, 55.944494, -3.186724, 55.944494, 2));
+        flightpath.add(new DroneMove("1", -3.186724, 55.944494, "202.5", -3.18686258172, 55.94443659636, 3));
+        File file = File.createTempFile("flightpath", ".json");
+        file.deleteOnExit();
+        // the streamed files are the same as the ones jackson and mapbox write from the whole path
+        ResultWriter.writeFlightpath(file.toPath(), flightpath, false);
+        assertEquals(new ObjectMapper().writeValueAsString(flightpath), new String(Files.readAllBytes(file.toPath())));
+        ResultWriter.writeDrone(file.toPath(), flightpath, false);
+        assertEquals(FeatureCollection.fromFeature(Feature.fromGeometry(LineString.fromLngLats(DroneMove.makePathCoordinates(flightpath)))).toJson(),
+                new String(Files.readAllBytes(file.toPath())));
+        // a day with no deliveries has one feature with no points, as mapbox writes for an empty LineString
+        ResultWriter.writeDrone(file.toPath(), new ArrayList<>(), false);
+        assertEquals(FeatureCollection.fromFeature(Feature.fromGeometry(LineString.fromLngLats(new ArrayList<Point>()))).toJson(),
+                new String(Files.readAllBytes(file.toPath())));
+        ResultWriter.writeFlightpath(file.toPath(), flightpath, true);
+        try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(file))){
+            assertEquals(new ObjectMapper().writeValueAsString(flightpath), new String(in.readAllBytes()));
+        }
+    }
+
+    public void testFlightPathBuffer() throws IOException {
+        Restaurant[] restaurants = localRestaurants();
+        Order order = localOrders(restaurants, 1)[0];
+        PathPlanner planner = new AStarPathPlanner(cupNoFlyZone(), localCentralArea());
+        FlightPathBuffer flightpath = new FlightPathBuffer(1);
+        assertTrue(App.appendFullOrderPath(flightpath, App.DRONE_START, order, restaurants[0], planner, 0));
+        int moves = planner.planMoves(App.DRONE_START, new LngLat(restaurants[0].longitude(), restaurants[0].latitude())).length;
+        assertEquals(2 * moves + 2, flightpath.size());
+        // the way back retraces the way there exactly, and finishes with a hover where the trip started
+        for (int i = 0; i < moves; i++){
+            int back = 2 * moves - i;
+            assertEquals(flightpath.getDirection(i).opposite(), flightpath.getDirection(back));
+            assertEquals(flightpath.getFromLongitude(i), flightpath.getToLongitude(back));
+            assertEquals(flightpath.getFromLatitude(i), flightpath.getToLatitude(back));
+        }
+        assertEquals("null", flightpath.getAngle(moves));
+        assertEquals("null", flightpath.getAngle(2 * moves + 1));
+        assertEquals(App.DRONE_START, new LngLat(flightpath.getToLongitude(2 * moves + 1), flightpath.getToLatitude(2 * moves + 1)));
+        DroneMove first = flightpath.asList().get(0);
+        assertEquals(order.orderNo(), first.getOrderNo());
+        assertEquals(flightpath.getDirection(0).getAngleString(), first.getAngle());
+        // a second order added then taken off again leaves the flightpath as it was
+        FlightPathBuffer other = new FlightPathBuffer();
+        other.addHover("other", 1, 2, 3);
+        int size = flightpath.size();
+        flightpath.addAll(other);
+        assertEquals("other", flightpath.getOrderNo(size));
+        assertEquals(order.orderNo(), flightpath.getOrderNo(size - 1));
+        flightpath.truncate(size);
+        assertEquals(size, flightpath.asList().size());
+        try {
+            flightpath.getOrderNo(size);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected, the move was taken off
+        }
+    }
+
+    public void testBinaryFlightpath() throws IOException {
+        List<DroneMove> flightpath = new ArrayList<>();
+        // enough order numbers to need two bytes per index, with hovers and ticks that go backwards
+        for (int i = 0; i < 300; i++){
+            CompassDirection direction = CompassDirection.get(i % CompassDirection.COUNT);
+            double longitude = -3.186874 + i * 0.0001;
+            flightpath.add(new DroneMove(Integer.toHexString(i), longitude, 55.944494, direction.getAngleString(),
+                    direction.nextLongitude(longitude), direction.nextLatitude(55.944494), i % 7 == 0 ? i - 5 : i));
+            flightpath.add(new DroneMove(Integer.toHexString(i), longitude, 55.944494, longitude, 55.944494, i));
+        }
+        File json = File.createTempFile("flightpath", ".json");
+        json.deleteOnExit();
+        File binary = File.createTempFile("flightpath", ".bin");
+        binary.deleteOnExit();
+        ResultWriter.writeFlightpath(json.toPath(), flightpath, false);
+        BinaryFlightpath.fromJson(json.toPath(), binary.toPath());
+        assertTrue(binary.length() < json.length() / 4);
+        BinaryFlightpath read = BinaryFlightpath.open(binary.toPath());
+        assertEquals(600, read.size());
+        assertEquals("12b", read.getOrderNo(598));
+        assertEquals("null", read.getAngle(1));
+        assertEquals(289, read.getTicksSinceStartOfCalculation(2 * 294));
+        assertEquals(294, read.getTicksSinceStartOfCalculation(2 * 294 + 1));
+        // converting back gives exactly the same file
+        File converted = File.createTempFile("flightpath", ".json");
+        converted.deleteOnExit();
+        BinaryFlightpath.toJson(binary.toPath(), converted.toPath());
+        assertTrue(Arrays.equals(Files.readAllBytes(json.toPath()), Files.readAllBytes(converted.toPath())));
+        try {
+            BinaryFlightpath.write(binary.toPath(), List.of(new DroneMove("1", 0, 0, "10.0", 0, 0, 0)));
+            fail();
+        } catch (IOException e) {
+            // expected, the angle is not a compass direction
+        }
+    }
+
+    public void testRestDataSource() throws IOException {
+        // a directory laid out like the REST server, read through file URLs
+        File server = Files.createTempDirectory("server").toFile();
+        new File(server, "orders").mkdir();
+        new ObjectMapper().writeValue(new File(server, "restaurants"), localRestaurants());
+        try (FileWriter writer = new FileWriter(new File(server, "orders/2023-01-01"))){
+            writer.write("[]");
+        }
+        File snapshots = Files.createTempDirectory("snapshots").toFile();
+        RestDataSource online = new RestDataSource(server.toURI().toURL().toString(), snapshots.toPath(), false);
+        Restaurant[] restaurants = online.getRestaurants();
+        assertEquals(3, restaurants.length);
+        // fetched once per run
+        assertSame(restaurants, online.getRestaurants());
+        assertEquals(0, online.getOrders("2023-01-01").length);
+        // kept under a directory of their own, which no other server shares
+        Path kept = online.getSnapshotDir();
+        assertEquals(snapshots.toPath(), kept.getParent());
+        assertFalse(kept.equals(new RestDataSource("http://localhost:1/", snapshots.toPath(), false).getSnapshotDir()));
+        assertTrue(Files.exists(kept.resolve("restaurants.json")));
+        assertTrue(Files.exists(kept.resolve("orders_2023-01-01.json")));
+        // offline, the snapshots are read even once the server has gone
+        new File(server, "restaurants").delete();
+        RestDataSource offline = new RestDataSource(server.toURI().toURL().toString(), snapshots.toPath(), true);
+        assertEquals("Near", offline.getRestaurants()[0].name());
+        assertEquals(0, offline.getOrders("2023-01-01").length);
+        try {
+            offline.getOrders("2023-01-02");
+            fail();
+        } catch (IOException e) {
+            // expected, there is no snapshot of the day
+        }
+        // servers with different central areas each get their own, whichever the singleton was loaded with
+        LngLat[][] areas = {
+                {new LngLat(-3.2, 55.95), new LngLat(-3.2, 55.94), new LngLat(-3.18, 55.94), new LngLat(-3.18, 55.95)},
+                {new LngLat(-3.3, 55.97), new LngLat(-3.3, 55.93), new LngLat(-3.1, 55.93), new LngLat(-3.1, 55.97)}};
+        for (LngLat[] area : areas){
+            File other = Files.createTempDirectory("server").toFile();
+            new ObjectMapper().writeValue(new File(other, "centralArea"), area);
+            CentralArea centralArea = new RestDataSource(other.toURI().toURL().toString(), null, false).getCentralArea();
+            assertTrue(Arrays.equals(area, centralArea.getPoints()));
+        }
+    }
+
+    public void testWorkloadGenerator() throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator(7);
+        Restaurant[] restaurants = generator.restaurants(5);
+        NoFlyZone[] zones = generator.noFlyZones(20, restaurants);
+        assertEquals(20, zones.length);
+        // the drone can move in any direction from a restaurant or Appleton Tower without entering a zone
+        MultiPolygon noFlyZones = NoFlyZone.toMultiPolygon(zones);
+        for (int i = 0; i < CompassDirection.COUNT; i++){
+            float angle = CompassDirection.get(i).getAngle();
+            assertFalse(NoFlyZone.intersectsNoFlyZones(noFlyZones, App.DRONE_START, angle));
+            for (Restaurant restaurant : restaurants){
+                assertFalse(NoFlyZone.intersectsNoFlyZones(noFlyZones, new LngLat(restaurant.longitude(), restaurant.latitude()), angle));
+            }
+        }
+        // every outcome is generated, and the same seed gives the same orders
+        Order[] orders = generator.orders("2023-01-01", 2000, restaurants);
+        Set<String> outcomes = new HashSet<>();
+        for (Order order : orders){
+            outcomes.add(order.getValidity(restaurants));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Valid", "InvalidCardNumber", "InvalidExpiryDate", "InvalidCvv",
+                "InvalidTotal", "InvalidPizzaNotDefined", "InvalidPizzaCount", "InvalidPizzaCombinationMultipleSuppliers")), outcomes);
+        Order[] again = new WorkloadGenerator(7).orders("2023-01-01", 2000, restaurants);
+        assertEquals(orders[1999].orderNo(), again[1999].orderNo());
+        assertEquals(orders[1999].creditCardNumber(), again[1999].creditCardNumber());
+        // the stand-in serves the same data over HTTP
+        try (LocalRestServer server = new LocalRestServer(0, 7, 2000, 5, 20)){
+            RestDataSource source = new RestDataSource(server.getBaseUrl(), null, false);
+            assertEquals(restaurants[4].name(), source.getRestaurants()[4].name());
+            assertEquals(4, source.getCentralArea().getPoints().length);
+            Order[] served = source.getOrders("2023-01-01");
+            assertEquals(2000, served.length);
+            assertEquals(orders[1999].orderNo(), served[1999].orderNo());
+            assertEquals(orders[1999].priceTotalInPence(), served[1999].priceTotalInPence());
+        }
+    }
+
+    public void testPlannerService() throws Exception {
+        File snapshots = Files.createTempDirectory("snapshots").toFile();
+        RunOptions options = new RunOptions(new String[]{"--snapshot-dir=" + snapshots, "--threads=2"}, 0);
+        try (LocalRestServer rest = new LocalRestServer(0, 11, 40, 3, 3);
+             LocalRestServer other = new LocalRestServer(0, 12, 40, 4, 2);
+             PlannerService service = new PlannerService(0, rest.getBaseUrl(), options)){
+            // two days planned at the same time share the data loaded by the first request
+            ExecutorService clients = Executors.newFixedThreadPool(3);
+            Future<JsonNode> first = clients.submit(() -> post(service.getUrl() + "plan?date=2023-05-05"));
+            Future<JsonNode> second = clients.submit(() -> post(service.getUrl() + "plan?date=2023-05-06&url=" + rest.getBaseUrl()));
+            // while another server is loaded and planned with its own data, waiting for the same date's files
+            Future<JsonNode> third = clients.submit(() -> post(service.getUrl() + "plan?date=2023-05-05&url=" + other.getBaseUrl()));
+            assertTrue(first.get().get("planned").asBoolean());
+            assertTrue(second.get().get("planned").asBoolean());
+            assertTrue(third.get().get("planned").asBoolean());
+            clients.shutdown();
+            // each server's snapshots are kept apart
+            assertTrue(Files.exists(new RestDataSource(rest.getBaseUrl(), snapshots.toPath(), false).getSnapshotDir().resolve("restaurants.json")));
+            assertTrue(Files.exists(new RestDataSource(other.getBaseUrl(), snapshots.toPath(), false).getSnapshotDir().resolve("restaurants.json")));
+            assertTrue(post(service.getUrl() + "plan?date=2023-13-01").has("error"));
+        }
+    }
+
+    /**
+     * Sends a POST request with no body and parses the JSON response, whatever its status.
+     */
+    private static JsonNode post(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        InputStream body = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (body){
+            return new ObjectMapper().readTree(body);
+        }
+    }
+
+    public void testMetrics() throws IOException {
+        URL centralURL = localCentralArea();
+        MultiPolygon noFlyZone = cupNoFlyZone();
+        Restaurant[] restaurants = localRestaurants();
+        Order[] orders = localOrders(restaurants, 5);
+        // nothing is counted while the metrics are off
+        Metrics.reset();
+        App.planDay(orders, restaurants, new GreedyPathPlanner(noFlyZone, centralURL));
+        assertEquals(0, Metrics.FIND_BEST_MOVE_CALLS.sum());
+        assertEquals(0, Metrics.phaseCount(Metrics.Phase.PLANNING));
+        Metrics.setEnabled(true);
+        try {
+            App.DayPlan plan = App.planDay(orders, restaurants, new GreedyPathPlanner(noFlyZone, centralURL));
+            assertEquals(1, Metrics.phaseCount(Metrics.Phase.VALIDATION));
+            assertTrue(Metrics.phaseCount(Metrics.Phase.PLANNING) > 0);
+            assertTrue(Metrics.FIND_BEST_MOVE_CALLS.sum() > 0);
+            // the cup's walls are in the way of a goal inside it, so some moves are rejected for crossing them
+            new AStarPathPlanner(noFlyZone, centralURL).planMoves(new LngLat(-3.2, 55.95), new LngLat(-3.2, 55.953));
+            assertTrue(Metrics.REJECTED_NO_FLY.sum() > 0);
+            assertTrue(Metrics.REJECTED_EXPLORED.sum() > 0);
+            assertTrue(Metrics.EDGE_TESTS.sum() > 0);
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            Metrics.writeSummary(summary);
+            JsonNode json = new ObjectMapper().readTree(summary.toByteArray());
+            assertEquals(Metrics.FIND_BEST_MOVE_CALLS.sum(), json.get("findBestMoveCalls").asLong());
+            assertEquals(plan.flightpath().size(), json.get("orderPaths").get("moves").asInt());
+            // every move back into the central area is counted, not only those that would have been the best move:
+            // just west of it with the goal further west, the five moves with an east component are all rejected
+            long central = Metrics.REJECTED_CENTRAL.sum();
+            App.findBestMove(new LngLat(-3.19256, 55.9444), new LngLat(-3.21, 55.9444), noFlyZone, new PositionIndex(), centralURL);
+            assertEquals(central + 5, Metrics.REJECTED_CENTRAL.sum());
+        } finally {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
+
+    /**
+     * Test the hand-written codecs read what an ObjectMapper writes, and write what an ObjectMapper reads.
+     */
+    public void testJsonCodecs() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        WorkloadGenerator generator = new WorkloadGenerator(3);
+        Restaurant[] restaurants = generator.restaurants(4);
+        NoFlyZone[] zones = generator.noFlyZones(6, restaurants);
+        Order[] orders = generator.orders("2023-02-01", 50, restaurants);
+        Restaurant[] readRestaurants = JsonCodecs.readArray(new ByteArrayInputStream(mapper.writeValueAsBytes(restaurants)), Restaurant.class);
+        assertEquals(restaurants[3].name(), readRestaurants[3].name());
+        assertEquals(restaurants[3].latitude(), readRestaurants[3].latitude());
+        assertTrue(Arrays.equals(restaurants[3].menu(), readRestaurants[3].menu()));
+        NoFlyZone[] readZones = mapper.readValue(JsonCodecs.writeArray(zones, NoFlyZone.class), NoFlyZone[].class);
+        assertTrue(Arrays.deepEquals(zones[5].coordinates(), readZones[5].coordinates()));
+        Order[] readOrders = JsonCodecs.readArray(new ByteArrayInputStream(JsonCodecs.writeArray(orders, Order.class)), Order.class);
+        assertEquals(50, readOrders.length);
+        assertEquals(orders[49].orderNo(), readOrders[49].orderNo());
+        assertEquals(orders[49].cvv(), readOrders[49].cvv());
+        assertTrue(Arrays.equals(orders[49].orderItems(), readOrders[49].orderItems()));
+        // unknown fields, such as the names of the central area's corners, are skipped
+        String centralArea = "[{\"name\":\"A\",\"longitude\":-3.19,\"latitude\":55.94,\"extra\":{\"a\":[1]}},null]";
+        LngLat[] points = JsonCodecs.readArray(new ByteArrayInputStream(centralArea.getBytes()), LngLat.class);
+        assertEquals(new LngLat(-3.19, 55.94), points[0]);
+        assertNull(points[1]);
+        try {
+            JsonCodecs.readArray(new ByteArrayInputStream("{}".getBytes()), LngLat.class);
+            fail("an object is not an array of points");
+        } catch (IOException e) {
+            // expected
+        }
+        // a known field of the wrong type fails, as it does with an ObjectMapper, rather than being read as 0 or null
+        String[] malformed = {"[{\"name\":\"Margarita\",\"priceInPence\":\"abc\"}]", "[{\"name\":\"Margarita\",\"priceInPence\":null}]",
+                "[{\"name\":{\"first\":\"a\"},\"priceInPence\":1000}]", "[{\"name\":\"Margarita\",\"priceInPence\":[1000]}]"};
+        for (String json : malformed){
+            try {
+                JsonCodecs.readArray(new ByteArrayInputStream(json.getBytes()), Item.class);
+                fail("read " + json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        try {
+            JsonCodecs.readArray(new ByteArrayInputStream("[{\"longitude\":null,\"latitude\":55.94}]".getBytes()), LngLat.class);
+            fail("read a null longitude");
+        } catch (IOException e) {
+            // expected
+        }
+        // a nested value in a known field can't be mistaken for the record's own fields
+        try {
+            JsonCodecs.readArray(new ByteArrayInputStream(("[{\"orderNo\":\"1\",\"priceTotalInPence\":{\"orderNo\":\"2\"},"
+                    + "\"orderItems\":[]}]").getBytes()), Order.class);
+            fail("read an object as the total");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test planning a day as its orders arrive gives the same plan as planning the whole day, and never changes the
+     * trips the drone has started.
+     */
+    public void testIncrementalPlanner() throws IOException {
+        URL centralURL = localCentralArea();
+        Restaurant[] restaurants = localRestaurants();
+        PathPlanner planner = new AStarPathPlanner(cupNoFlyZone(), centralURL);
+        Order[] orders = localOrders(restaurants, 30);
+        orders[7] = new Order(orders[7].orderNo(), orders[7].orderDate(), orders[7].customer(), "123", orders[7].creditCardExpiry(),
+                orders[7].cvv(), orders[7].priceTotalInPence(), orders[7].orderItems());
+        App.DayPlan whole = App.planDay(orders, restaurants, planner);
+        IncrementalPlanner incremental = new IncrementalPlanner(restaurants, planner);
+        assertEquals(10, incremental.addOrders(Arrays.copyOfRange(orders, 0, 10)));
+        // orders already seen are ignored, such as when the whole day is fetched again
+        assertEquals(20, incremental.addOrders(orders));
+        assertEquals(0, incremental.addOrders(Arrays.copyOfRange(orders, 20, 30)));
+        Delivery[] deliveries = incremental.getDeliveries();
+        assertEquals(orders.length, deliveries.length);
+        assertEquals(OrderOutcome.InvalidCardNumber.toString(), deliveries[7].getOutcome());
+        for (int i = 0; i < orders.length; i++){
+            assertEquals(whole.deliveries()[i].getOutcome(), deliveries[i].getOutcome());
+        }
+        List<DroneMove> flightpath = incremental.getFlightpath();
+        assertEquals(whole.flightpath().size(), flightpath.size());
+        for (int i = 0; i < flightpath.size(); i++){
+            assertEquals(whole.flightpath().get(i).getOrderNo(), flightpath.get(i).getOrderNo());
+            assertEquals(whole.flightpath().get(i).getAngle(), flightpath.get(i).getAngle());
+        }
+        // once the drone is part way through its first trip, that trip is kept even if nearer orders arrive
+        int committed = incremental.markFlown(3);
+        assertTrue(committed > 3 && committed < flightpath.size());
+        assertEquals(flightpath.get(committed - 1).getOrderNo(), flightpath.get(0).getOrderNo());
+        assertFalse(flightpath.get(committed).getOrderNo().equals(flightpath.get(0).getOrderNo()));
+        Order[] later = localOrders(restaurants, 40);
+        for (int i = 30; i < later.length; i++){
+            later[i - 30] = new Order("L" + i, later[i].orderDate(), later[i].customer(), later[i].creditCardNumber(),
+                    later[i].creditCardExpiry(), later[i].cvv(), later[i].priceTotalInPence(), later[i].orderItems());
+        }
+        assertEquals(10, incremental.addOrders(Arrays.copyOf(later, 10)));
+        List<DroneMove> replanned = incremental.getFlightpath();
+        assertTrue(replanned.size() <= 2000);
+        for (int i = 0; i < committed; i++){
+            assertEquals(flightpath.get(i).getOrderNo(), replanned.get(i).getOrderNo());
+            assertEquals(flightpath.get(i).getAngle(), replanned.get(i).getAngle());
+        }
+        Set<String> flown = new HashSet<>();
+        for (DroneMove move : replanned){
+            flown.add(move.getOrderNo());
+        }
+        int delivered = 0;
+        for (Delivery delivery : incremental.getDeliveries()){
+            if (delivery.getOutcome().equals(OrderOutcome.Delivered.toString())){
+                delivered++;
+                assertTrue(flown.contains(delivery.getOrderNo()));
+            }
+        }
+        assertEquals(flown.size(), delivered);
+        // flying past the end of the plan commits all of it
+        assertEquals(replanned.size(), incremental.markFlown(5000));
+    }
+
 }